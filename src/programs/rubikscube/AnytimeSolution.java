@@ -0,0 +1,259 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+import java.util.*;
+import java.util.function.*;
+
+
+/**
+ * Anytime solution within time and node budget.
+ * It first finds a solution quickly with {@link TwoPhaseSolution}, within {@link #share} of the time limit.
+ * Then it runs weighted iterative deepening search with each of {@link #weights},
+ * and each run only accepts solutions shorter than the best one. Then it runs iterative deepening A* with the
+ * admissible heuristic, whose every completed iteration raises the proven lower bound.
+ * When the budget runs out, the best solution found so far is returned.
+ * The best length and the lower bound may be read from other threads while the search is running.
+ * Instance of this class must not be shared between threads.
+ * 
+ * @author hasol
+ */
+public class AnytimeSolution extends PatternSolution
+{
+	/** Weights of heuristic in successive weighted searches, in decreasing order. */
+	static double[] weights =
+	{
+		3, 2, 1.5
+	};
+	/** Fraction of time limit given to the first solution. */
+	static double share = 0.25;
+	/** Default time limit in milliseconds. */
+	static long timeout = 1000;
+	/** Default limit of number of visited nodes. */
+	static long limit = Long.MAX_VALUE;
+	
+	/** Time limit of this solution in milliseconds. */
+	final long duration;
+	/** Limit of number of visited nodes of this solution. */
+	final long budget;
+	/** Move codes of best solution found. */
+	int[] best;
+	/** Time limit of current search, in nanoseconds. */
+	long deadline;
+	/** Length of best solution found, or {@link Integer#MAX_VALUE}. */
+	volatile int upper;
+	/** Proven lower bound of solution length. */
+	volatile int lower;
+	
+	/**
+	 * Create solution with default budget.
+	 */
+	public AnytimeSolution ()
+	{
+		this (timeout, limit);
+	}
+	
+	/**
+	 * Create solution with given budget.
+	 * 
+	 * @param duration
+	 *        time limit in milliseconds.
+	 * @param budget
+	 *        limit of number of visited nodes.
+	 */
+	public AnytimeSolution (long duration, long budget)
+	{
+		super ();
+		this.duration = duration;
+		this.budget = budget;
+	}
+	
+	/**
+	 * Create solution with given heuristic and budget.
+	 * 
+	 * @param heuristic
+	 *        admissible estimate of number of quarter turns.
+	 * @param duration
+	 *        time limit in milliseconds.
+	 * @param budget
+	 *        limit of number of visited nodes.
+	 */
+	public AnytimeSolution (ToIntFunction <CubeState> heuristic, long duration, long budget)
+	{
+		super (heuristic);
+		this.duration = duration;
+		this.budget = budget;
+	}
+	
+	@Override
+	public List <CubeDuo> apply (CubeState map)
+	{
+		state = new CubeState (map);
+		if (stack.length < maximum)
+		{
+			stack = new int[maximum];
+		}
+		best = null;
+		stopped = false;
+		nodes = 0;
+		expanded = 0;
+		deadline = System.nanoTime () + duration * 1000000;
+		lower = Math.max (minimum, (int) Math.ceil (applyAsDouble (state)));
+		threshold = lower;
+		upper = Integer.MAX_VALUE;
+		// find solution quickly, then shorter ones with smaller weights.
+		first (map);
+		for (double weight : weights)
+		{
+			double bound = lower * weight;
+			while (!stopped && bound < Integer.MAX_VALUE)
+			{
+				double next = search (0, bound, weight);
+				if (next == FOUND)
+				{
+					break;
+				}
+				bound = next;
+			}
+		}
+		// prove lower bound, until it meets the best length.
+		while (!stopped && lower < upper)
+		{
+			double next = search (0, lower, 1);
+			if (next == FOUND)
+			{
+				break;
+			}
+			else if (!stopped)
+			{
+				lower = (int) Math.min (next, upper);
+				threshold = lower;
+			}
+		}
+		if (best == null)
+		{
+			return null;
+		}
+		LinkedList <CubeDuo> list = new LinkedList <> ();
+		for (int move : best)
+		{
+			CubeTable.steps (move, list);
+		}
+		return list;
+	}
+	
+	/**
+	 * Find first solution with two-phase solution.
+	 * 
+	 * @param map
+	 *        initial state.
+	 */
+	void first (CubeState map)
+	{
+		TwoPhaseSolution solution = new TwoPhaseSolution ();
+		solution.duration = (long) (duration * share);
+		solution.budget = (long) (budget * share);
+		List <CubeDuo> list = solution.apply (map);
+		nodes += solution.nodes;
+		if (list != null)
+		{
+			best = new int[list.size ()];
+			int i = 0;
+			for (CubeDuo step : list)
+			{
+				best[i++] = CubeTable.move (step);
+			}
+			upper = best.length;
+		}
+	}
+	
+	/**
+	 * Perform depth first search for solution shorter than the best one, within given bound.
+	 * 
+	 * @param depth
+	 *        number of moves on the stack.
+	 * @param bound
+	 *        maximum weighted path cost to search.
+	 * @param weight
+	 *        weight of heuristic.
+	 * @return {@link #FOUND} if found, otherwise minimum weighted cost exceeding the bound.
+	 */
+	double search (int depth, double bound, double weight)
+	{
+		if ((++nodes & 0x3FF) == 0)
+		{ // publish progress, and stop if out of budget or interrupted.
+			expanded = nodes;
+			stopped |= nodes >= budget || System.nanoTime () > deadline || Thread.currentThread ().isInterrupted ();
+		}
+		if (stopped)
+		{
+			return Integer.MAX_VALUE;
+		}
+		double estimate = applyAsDouble (state), cost = depth + estimate * weight;
+		if (depth + estimate >= upper || depth >= maximum)
+		{ // cannot improve the best solution.
+			return Integer.MAX_VALUE;
+		}
+		else if (cost > bound)
+		{
+			return cost;
+		}
+		else if (test (state))
+		{
+			best = Arrays.copyOf (stack, depth);
+			upper = depth;
+			if (weight == 1)
+			{ // first solution of admissible search is optimal.
+				lower = depth;
+			}
+			return FOUND;
+		}
+		double least = Integer.MAX_VALUE;
+		int current = automaton.state (stack, depth);
+		for (int move : moves)
+		{
+			if (automaton.next (current, move) != MoveAutomaton.DEAD)
+			{
+				stack[depth] = move;
+				state.turn (move);
+				double next = search (depth + 1, bound, weight);
+				state.turn (CubeTable.inverse (move));
+				if (next == FOUND)
+				{
+					return FOUND;
+				}
+				least = Math.min (least, next);
+			}
+		}
+		return least;
+	}
+	
+	/**
+	 * Gets length of best solution found.
+	 * 
+	 * @return number of quarter turns, or {@link Integer#MAX_VALUE} if not found yet.
+	 */
+	public int upper ()
+	{
+		return upper;
+	}
+	
+	/**
+	 * Gets proven lower bound of solution length.
+	 * 
+	 * @return number of quarter turns.
+	 */
+	public int lower ()
+	{
+		return lower;
+	}
+	
+	/**
+	 * Gets number of nodes visited by current search.
+	 * 
+	 * @return number of nodes.
+	 */
+	public long nodes ()
+	{
+		return nodes;
+	}
+}
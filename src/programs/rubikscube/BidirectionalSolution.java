@@ -0,0 +1,182 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+import java.util.*;
+
+
+/**
+ * Bidirectional meet-in-the-middle solution.
+ * Every state within {@link #depth} quarter turns of solved state is stored once in a {@link PackedTable},
+ * with its distance and the last move reaching it, and shared by all instances.
+ * The search then streams states at increasing distance from the initial state against the table.
+ * The first meeting with {@code level + distance} not exceeding {@code level + depth + 1} is optimal,
+ * since any shorter solution would have met the table at an earlier level.
+ * Instance of this class must not be shared between threads.
+ * 
+ * @author hasol
+ */
+public class BidirectionalSolution extends CubeSolution
+{
+	/** Move value of solved state, which has no last move. */
+	final static int NONE = 0x1F;
+	/** Number of bits of move in stored value. */
+	final static int MOVE_BITS = 5;
+	
+	/** Number of quarter turns searched backward and stored, at most 7. */
+	static int depth = 6;
+	/** Maximum number of moves of solution. */
+	static int maximum = 26;
+	
+	/** Stored states near solved state. */
+	private static PackedTable table;
+	/** Depth of stored states. */
+	private static int stored;
+	
+	/** Mutable state being searched forward. */
+	CubeState state;
+	/** Move codes of current forward path. */
+	int[] stack = new int[maximum];
+	/** Move codes of best solution found. */
+	int[] best;
+	/** Length of best solution found. */
+	int length;
+	
+	/**
+	 * Gets table of states near solved state, building it if necessary.
+	 * 
+	 * @return shared table.
+	 */
+	static synchronized PackedTable table ()
+	{
+		if (table == null || stored != depth)
+		{
+			table = null; // release old table before building new one.
+			table = build (depth);
+			stored = depth;
+		}
+		return table;
+	}
+	
+	/**
+	 * Build table of states within given distance from solved state, by breadth first search.
+	 * 
+	 * @param depth
+	 *        maximum distance.
+	 * @return table of {@code distance << MOVE_BITS | last move} of each state.
+	 */
+	static PackedTable build (int depth)
+	{
+		PackedTable table = new PackedTable (1 << 16);
+		CubeState solved = new CubeState ();
+		table.put (solved.high (), solved.low (), NONE);
+		long[] frontier =
+		{
+			solved.high (), solved.low ()
+		};
+		int count = 1;
+		for (int distance = 1; distance <= depth; distance++)
+		{
+			long[] next = new long[count * CubeTable.QUARTER_SIZE * 2];
+			int found = 0;
+			for (int i = 0; i < count; i++)
+			{
+				CubeState state = new CubeState (frontier[2 * i], frontier[2 * i + 1]);
+				for (int move = 0; move < CubeTable.QUARTER_SIZE; move++)
+				{
+					state.turn (move);
+					long high = state.high (), low = state.low ();
+					if (table.put (high, low, distance << MOVE_BITS | move))
+					{
+						next[2 * found] = high;
+						next[2 * found + 1] = low;
+						found++;
+					}
+					state.turn (CubeTable.inverse (move));
+				}
+			}
+			frontier = next;
+			count = found;
+		}
+		return table;
+	}
+	
+	@Override
+	public List <CubeDuo> apply (CubeState map)
+	{
+		PackedTable table = table ();
+		int stored = BidirectionalSolution.stored;
+		state = new CubeState (map);
+		best = null;
+		length = Integer.MAX_VALUE;
+		for (int level = 0; level < maximum && length > level + stored + 1; level++)
+		{
+			search (table, 0, level);
+		}
+		if (best == null)
+		{
+			return null;
+		}
+		LinkedList <CubeDuo> list = new LinkedList <> ();
+		for (int move : best)
+		{
+			CubeTable.steps (move, list);
+		}
+		return list;
+	}
+	
+	/**
+	 * Stream states at given distance from initial state against the table.
+	 * 
+	 * @param table
+	 *        stored states near solved state.
+	 * @param depth
+	 *        number of moves on the stack.
+	 * @param level
+	 *        distance of streamed states.
+	 */
+	void search (PackedTable table, int depth, int level)
+	{
+		if (depth == level)
+		{
+			int value = table.get (state.high (), state.low ());
+			if (value >= 0 && level + (value >>> MOVE_BITS) < length)
+			{
+				join (table, level, value >>> MOVE_BITS);
+			}
+			return;
+		}
+		for (int move = 0; move < CubeTable.QUARTER_SIZE; move++)
+		{
+			if (test (move, stack, depth))
+			{
+				stack[depth] = move;
+				state.turn (move);
+				search (table, depth + 1, level);
+				state.turn (CubeTable.inverse (move));
+			}
+		}
+	}
+	
+	/**
+	 * Record solution joining forward path on the stack with stored path from current state to solved state.
+	 * 
+	 * @param table
+	 *        stored states near solved state.
+	 * @param level
+	 *        length of forward path.
+	 * @param distance
+	 *        length of stored path.
+	 */
+	void join (PackedTable table, int level, int distance)
+	{
+		best = Arrays.copyOf (stack, level + distance);
+		length = best.length;
+		CubeState next = new CubeState (state);
+		for (int i = level; i < length; i++)
+		{ // undo last move of each stored state.
+			int move = CubeTable.inverse (table.get (next.high (), next.low ()) & NONE);
+			best[i] = move;
+			next.turn (move);
+		}
+	}
+}
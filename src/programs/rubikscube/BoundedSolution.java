@@ -0,0 +1,201 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+import java.util.*;
+
+
+/**
+ * Memory bounded A* solution in the manner of SMA*, searching with the same weighted priority as {@link CubeSolution}.
+ * It keeps a search tree of at most {@link #budget} nodes. When the budget is reached,
+ * the worst leaf, which has the greatest priority and the least depth, is forgotten and its priority is backed up
+ * to its parent. Once all children of a node are forgotten, the node becomes a leaf again with the least backed up
+ * priority, and its children are generated again when it becomes the best leaf.
+ * So the search degrades to regenerating forgotten nodes instead of running out of memory.
+ * Duplicate states are pruned only by {@link MoveAutomaton}, since states of forgotten nodes are not remembered.
+ * Instance of this class must not be shared between threads.
+ * 
+ * @author hasol
+ */
+public class BoundedSolution extends CubeSolution
+{
+	/** Estimated number of bytes taken by single node, including its entry in the open list. */
+	public final static int NODE_BYTES = 128;
+	
+	/** Default limit of number of nodes. */
+	static int limit = Integer.MAX_VALUE;
+	/** Default limit of bytes taken by nodes, a quarter of the heap. */
+	static long memory = Runtime.getRuntime ().maxMemory () / 4;
+	
+	/** Maximum number of nodes kept by this solution. */
+	final int budget;
+	/** Number of nodes forgotten by current search. */
+	long forgotten;
+	
+	/**
+	 * Searched node of the tree.
+	 */
+	static class Node
+	{
+		/** Packed state of this node. */
+		final long high, low;
+		/** Parent node, or {@code null} if root. */
+		final Node parent;
+		/** Move code from parent node. */
+		final int move;
+		/** Path cost of this node. */
+		final int depth;
+		/** State of automaton of this node. */
+		final int automaton;
+		/** Creation order, which breaks ties of the open list. */
+		final long order;
+		/** Estimated cost of the path through this node, which is not less than that of its parent. */
+		double priority;
+		/** Least priority of forgotten children. */
+		double backup = Double.POSITIVE_INFINITY;
+		/** Number of children kept in the tree. */
+		int children;
+		
+		Node (CubeState state, Node parent, int move, int depth, int automaton, long order, double priority)
+		{
+			this.high = state.high ();
+			this.low = state.low ();
+			this.parent = parent;
+			this.move = move;
+			this.depth = depth;
+			this.automaton = automaton;
+			this.order = order;
+			this.priority = priority;
+		}
+		
+		/**
+		 * Rebuild path from root node to this node.
+		 * 
+		 * @return list of steps.
+		 */
+		LinkedList <CubeDuo> path ()
+		{
+			LinkedList <CubeDuo> list = new LinkedList <> ();
+			for (Node node = this; node.parent != null; node = node.parent)
+			{
+				LinkedList <CubeDuo> steps = new LinkedList <> ();
+				CubeTable.steps (node.move, steps);
+				list.addAll (0, steps);
+			}
+			return list;
+		}
+	}
+	
+	/** Order of leaves, the best first, which has the least priority and the greatest depth. */
+	final static Comparator <Node> comparator = new Comparator <Node> ()
+	{
+		@Override
+		public int compare (Node o1, Node o2)
+		{
+			int result = Double.compare (o1.priority, o2.priority);
+			if (result == 0)
+			{
+				result = Integer.compare (o2.depth, o1.depth);
+			}
+			if (result == 0)
+			{
+				result = Long.compare (o1.order, o2.order);
+			}
+			return result;
+		}
+	};
+	
+	/**
+	 * Create solution with default budget.
+	 */
+	public BoundedSolution ()
+	{
+		this ((int) Math.min (limit, memory / NODE_BYTES));
+	}
+	
+	/**
+	 * Create solution with given budget.
+	 * 
+	 * @param budget
+	 *        maximum number of nodes, which should exceed the solution length plus the number of moves.
+	 */
+	public BoundedSolution (int budget)
+	{
+		this.budget = Math.max (budget, CubeTable.QUARTER_SIZE + 1);
+	}
+	
+	@Override
+	public List <CubeDuo> apply (CubeState state)
+	{
+		TreeSet <Node> open = new TreeSet <> (comparator);
+		long order = 0;
+		int size = 1;
+		open.add (new Node (state, null, 0, 0, MoveAutomaton.START, order++, estimate (state)));
+		expanded = 0;
+		forgotten = 0;
+		while (!open.isEmpty ())
+		{
+			if (Thread.currentThread ().isInterrupted ())
+			{
+				return null;
+			}
+			Node item = open.pollFirst ();
+			expanded++;
+			frontier = open.size ();
+			threshold = (int) item.priority;
+			CubeState current = new CubeState (item.high, item.low);
+			// check for end state.
+			if (test (current))
+			{
+				return item.path ();
+			}
+			// finish with optimal steps of endgame database.
+			List <CubeDuo> tail = endgame == null ? null : endgame.steps (current);
+			if (tail != null)
+			{
+				LinkedList <CubeDuo> list = item.path ();
+				list.addAll (tail);
+				return list;
+			}
+			// generate all children again, inheriting backed up priority.
+			item.backup = Double.POSITIVE_INFINITY;
+			for (int move = 0; move < CubeTable.QUARTER_SIZE; move++)
+			{
+				int automaton = QUARTER.next (item.automaton, move);
+				if (automaton != MoveAutomaton.DEAD)
+				{
+					CubeState next = current.apply (move);
+					double priority = Math.max (item.priority, estimate (next) + (item.depth + 1) * factor);
+					open.add (new Node (next, item, move, item.depth + 1, automaton, order++, priority));
+					item.children++;
+					size++;
+				}
+			}
+			// forget worst leaves until within budget.
+			while (size > budget)
+			{
+				Node worst = open.pollLast ();
+				Node parent = worst.parent;
+				parent.backup = Math.min (parent.backup, worst.priority);
+				parent.children--;
+				size--;
+				forgotten++;
+				if (parent.children == 0)
+				{
+					parent.priority = parent.backup;
+					open.add (parent);
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Gets number of nodes forgotten by current search.
+	 * 
+	 * @return number of nodes.
+	 */
+	public long forgotten ()
+	{
+		return forgotten;
+	}
+}
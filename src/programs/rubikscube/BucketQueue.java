@@ -0,0 +1,215 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+import java.util.*;
+
+
+/**
+ * Bucket priority queue of integer items, keyed by integer estimated path cost {@code f},
+ * and tie-broken on integer estimated remaining cost {@code h}, so that deeper nodes are expanded first.
+ * Each pair of keys has its own stack of items, and each {@code f} has a bit mask of its non-empty buckets,
+ * so adding and removing take constant time, except for scanning empty rows of {@code f},
+ * and one word of the mask for every 64 values of {@code h}.
+ * Items of the same keys are removed in reverse order of addition.
+ * 
+ * @author hasol
+ */
+public class BucketQueue
+{
+	/** Stacks of items of each bucket, at {@code f * (f + 1) / 2 + h}, or {@code null} if never used. */
+	private int[][] buckets = new int[0][];
+	/** Number of items of each bucket. */
+	private int[] sizes = new int[0];
+	/** Number of items of each {@code f}. */
+	private int[] rows = new int[0];
+	/** Bit masks of non-empty buckets of each {@code f}, bit {@code h % 64} of word {@code h / 64}. */
+	private long[][] masks = new long[0][];
+	/** Least {@code f} which may have items. */
+	private int first = Integer.MAX_VALUE;
+	/** Greatest {@code f} which may have items. */
+	private int last = -1;
+	/** Number of items. */
+	private int size;
+	
+	/**
+	 * Convert given cost to integer key, rounding up.
+	 * Order of costs is kept exactly if they are integers, as with integer heuristic and weight,
+	 * otherwise costs within the same integer are tied.
+	 * 
+	 * @param cost
+	 *        cost, not negative.
+	 * @return key.
+	 */
+	public static int key (double cost)
+	{
+		return (int) Math.ceil (cost);
+	}
+	
+	/**
+	 * Add given item.
+	 * 
+	 * @param item
+	 *        item to add.
+	 * @param f
+	 *        estimated path cost, not negative.
+	 * @param h
+	 *        estimated remaining cost, clamped to range {@code [0, f]}.
+	 */
+	public void add (int item, int f, int h)
+	{
+		h = Math.max (0, Math.min (h, f));
+		int bucket = f * (f + 1) / 2 + h;
+		if (f >= rows.length)
+		{
+			int length = Math.max (f + 1, rows.length * 2);
+			rows = Arrays.copyOf (rows, length);
+			masks = Arrays.copyOf (masks, length);
+			buckets = Arrays.copyOf (buckets, length * (length + 1) / 2);
+			sizes = Arrays.copyOf (sizes, buckets.length);
+		}
+		if (buckets[bucket] == null)
+		{
+			buckets[bucket] = new int[16];
+		}
+		else if (sizes[bucket] == buckets[bucket].length)
+		{
+			buckets[bucket] = Arrays.copyOf (buckets[bucket], sizes[bucket] * 2);
+		}
+		if (masks[f] == null)
+		{
+			masks[f] = new long[(f >>> 6) + 1];
+		}
+		masks[f][h >>> 6] |= 1L << h;
+		buckets[bucket][sizes[bucket]++] = item;
+		rows[f]++;
+		first = Math.min (first, f);
+		last = Math.max (last, f);
+		size++;
+	}
+	
+	/**
+	 * Remove item of the least {@code f}, and the least {@code h} among them.
+	 * 
+	 * @return removed item.
+	 * @throws NoSuchElementException
+	 *         if empty.
+	 */
+	public int remove ()
+	{
+		if (size == 0)
+		{
+			throw new NoSuchElementException ();
+		}
+		while (rows[first] == 0)
+		{
+			first++;
+		}
+		long[] mask = masks[first];
+		int word = 0;
+		while (mask[word] == 0)
+		{
+			word++;
+		}
+		int h = word << 6 | Long.numberOfTrailingZeros (mask[word]);
+		int bucket = first * (first + 1) / 2 + h;
+		if (--sizes[bucket] == 0)
+		{
+			mask[word] &= ~(1L << h);
+		}
+		rows[first]--;
+		size--;
+		return buckets[bucket][sizes[bucket]];
+	}
+	
+	/**
+	 * Remove item of the greatest {@code f}, and the greatest {@code h} among them,
+	 * which is the worst item to expand, so that the queue can be kept within a bound.
+	 * 
+	 * @return removed item.
+	 * @throws NoSuchElementException
+	 *         if empty.
+	 */
+	public int removeLast ()
+	{
+		if (size == 0)
+		{
+			throw new NoSuchElementException ();
+		}
+		while (rows[last] == 0)
+		{
+			last--;
+		}
+		long[] mask = masks[last];
+		int word = mask.length - 1;
+		while (mask[word] == 0)
+		{
+			word--;
+		}
+		int h = word << 6 | 63 - Long.numberOfLeadingZeros (mask[word]);
+		int bucket = last * (last + 1) / 2 + h;
+		if (--sizes[bucket] == 0)
+		{
+			mask[word] &= ~(1L << h);
+		}
+		rows[last]--;
+		size--;
+		return buckets[bucket][sizes[bucket]];
+	}
+	
+	/**
+	 * Gets least {@code f} of items.
+	 * 
+	 * @return least estimated path cost, or {@link Integer#MAX_VALUE} if empty.
+	 */
+	public int first ()
+	{
+		if (size == 0)
+		{
+			return Integer.MAX_VALUE;
+		}
+		while (rows[first] == 0)
+		{
+			first++;
+		}
+		return first;
+	}
+	
+	/**
+	 * Evaluate if empty.
+	 * 
+	 * @return {@code true} if empty, otherwise {@code false}.
+	 */
+	public boolean isEmpty ()
+	{
+		return size == 0;
+	}
+	
+	/**
+	 * Gets number of items.
+	 * 
+	 * @return number of items.
+	 */
+	public int size ()
+	{
+		return size;
+	}
+	
+	/**
+	 * Remove all items, keeping allocated buckets.
+	 */
+	public void clear ()
+	{
+		Arrays.fill (sizes, 0);
+		Arrays.fill (rows, 0);
+		for (long[] mask : masks)
+		{
+			if (mask != null)
+			{
+				Arrays.fill (mask, 0);
+			}
+		}
+		first = Integer.MAX_VALUE;
+		last = -1;
+		size = 0;
+	}
+}
@@ -0,0 +1,113 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+import java.util.*;
+
+
+/**
+ * Solution answering repeated states from {@link SolutionCache}, in front of any other solution.
+ * Each state is reduced to the representative of its symmetry class by {@link CubeSymmetry#canonical(CubeState)},
+ * whose packed state is the key of the cache, so that all conjugates of a solved state are answered as well.
+ * On a miss, the representative is solved by the wrapped solution and its steps are cached.
+ * Steps are translated back to the given state by {@link CubeSymmetry#restore(List, int)}.
+ * 
+ * @author hasol
+ */
+public class CachedSolution extends CubeSolution
+{
+	/** Wrapped solution. */
+	final CubeSolution solution;
+	/** Cache of solutions. */
+	final SolutionCache cache;
+	
+	/**
+	 * Create solution in front of given solution, with shared cache.
+	 * 
+	 * @param solution
+	 *        solution of states not cached.
+	 */
+	public CachedSolution (CubeSolution solution)
+	{
+		this (solution, SolutionCache.shared ());
+	}
+	
+	/**
+	 * Create solution in front of given solution, with given cache.
+	 * 
+	 * @param solution
+	 *        solution of states not cached.
+	 * @param cache
+	 *        cache of solutions, which may be shared between threads.
+	 */
+	public CachedSolution (CubeSolution solution, SolutionCache cache)
+	{
+		this.solution = solution;
+		this.cache = cache;
+	}
+	
+	@Override
+	public List <CubeDuo> apply (CubeState state)
+	{
+		int symmetry = CubeSymmetry.symmetry (state);
+		CubeState canonical = CubeSymmetry.conjugate (state, symmetry);
+		long high = canonical.high (), low = canonical.low ();
+		int[] moves = cache.get (high, low);
+		List <CubeDuo> steps;
+		if (moves != null)
+		{
+			steps = new LinkedList <> ();
+			for (int move : moves)
+			{
+				CubeTable.steps (move, steps);
+			}
+			expanded = 0;
+			frontier = 0;
+			threshold = steps.size ();
+			exhausted = false;
+		}
+		else
+		{
+			steps = solution.apply (canonical);
+			expanded = solution.expanded;
+			frontier = solution.frontier;
+			threshold = solution.threshold;
+			exhausted = solution.exhausted;
+			if (steps == null)
+			{
+				return null;
+			}
+			cache.put (high, low, steps);
+		}
+		return CubeSymmetry.restore (steps, symmetry);
+	}
+	
+	@Override
+	public CubeState apply (CubeState state, CubeDuo step)
+	{
+		return solution.apply (state, step);
+	}
+	
+	@Override
+	public double applyAsDouble (CubeState state)
+	{
+		return solution.applyAsDouble (state);
+	}
+	
+	@Override
+	public double applyAsDouble (CubeState state, List <CubeDuo> steps)
+	{
+		return solution.applyAsDouble (state, steps);
+	}
+	
+	@Override
+	public boolean test (CubeState state)
+	{
+		return solution.test (state);
+	}
+	
+	@Override
+	public String toString ()
+	{
+		return cache.toString ();
+	}
+}
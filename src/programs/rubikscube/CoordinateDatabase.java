@@ -0,0 +1,70 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+
+
+/**
+ * Pattern database over pair of coordinates, generated with given set of moves.
+ * Index is {@code first * second.size + second}. Used as pruning table of staged solutions,
+ * where each stage is restricted to subset of moves, possibly including half turns.
+ * 
+ * @author hasol
+ */
+public class CoordinateDatabase extends PatternDatabase
+{
+	/** Coordinates of this database. Move tables must be built for {@link #moves}. */
+	final CubeCoordinate first, second;
+	/** Move codes used for generation. */
+	final int[] moves;
+	
+	/**
+	 * Create database over given coordinates.
+	 * 
+	 * @param name
+	 *        file name of this database.
+	 * @param first
+	 *        major coordinate.
+	 * @param second
+	 *        minor coordinate.
+	 * @param moves
+	 *        move codes allowed in the stage.
+	 */
+	public CoordinateDatabase (String name, CubeCoordinate first, CubeCoordinate second, int... moves)
+	{
+		super (name, (long) first.size * second.size);
+		this.first = first;
+		this.second = second;
+		this.moves = moves;
+	}
+	
+	/**
+	 * Gets distance of given coordinates.
+	 * 
+	 * @param a
+	 *        value of major coordinate.
+	 * @param b
+	 *        value of minor coordinate.
+	 * @return minimum number of moves to reach goal.
+	 */
+	public int get (int a, int b)
+	{
+		return get ((long) a * second.size + b);
+	}
+	
+	@Override
+	public long index (CubeState state)
+	{
+		return (long) first.get (state) * second.size + second.get (state);
+	}
+	
+	@Override
+	protected int expand (long index, long[] next)
+	{
+		int a = (int) (index / second.size), b = (int) (index % second.size);
+		for (int i = 0; i < moves.length; i++)
+		{
+			next[i] = (long) first.move (a, moves[i]) * second.size + second.move (b, moves[i]);
+		}
+		return moves.length;
+	}
+}
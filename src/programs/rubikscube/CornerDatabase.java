@@ -0,0 +1,114 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+
+
+/**
+ * Pattern database over permutation and orientation of all 8 corners, ignoring edges.
+ * Index is {@code rank (perm) * TWIST_SIZE + twist}, which covers 88,179,840 entries in about 44 MB.
+ * Successors during generation are computed from coordinate move tables instead of facelets.
+ * 
+ * @author hasol
+ */
+public class CornerDatabase extends PatternDatabase
+{
+	/** Number of corner permutations. */
+	final static int PERM_SIZE = 40320;
+	/** Number of corner orientations. */
+	final static int TWIST_SIZE = 2187;
+	
+	/** Shared instance. */
+	private static CornerDatabase instance;
+	
+	/** Corner permutation after each quarter turn, at {@code perm * QUARTER_SIZE + move}. */
+	private int[] permMove;
+	/** Corner orientation after each quarter turn, at {@code twist * QUARTER_SIZE + move}. */
+	private short[] twistMove;
+	
+	/**
+	 * Create corner database.
+	 */
+	public CornerDatabase ()
+	{
+		super ("corner.pdb", (long) PERM_SIZE * TWIST_SIZE);
+	}
+	
+	/**
+	 * Gets shared instance, loading it if necessary.
+	 * 
+	 * @return loaded corner database.
+	 */
+	public static synchronized CornerDatabase getInstance ()
+	{
+		if (instance == null)
+		{
+			instance = new CornerDatabase ();
+			instance.load ();
+		}
+		return instance;
+	}
+	
+	@Override
+	public long index (CubeState state)
+	{
+		CubePiece corner = CubePiece.CORNER;
+		long perm = 0;
+		int twist = 0, used = 0;
+		for (int p = 0; p < corner.count; p++)
+		{
+			int value = corner.piece (state, p);
+			perm = perm * (corner.count - p) + value - Integer.bitCount (used & ((1 << value) - 1));
+			used |= 1 << value;
+			if (p < corner.count - 1)
+			{
+				twist = twist * corner.size + corner.orientation (state, p);
+			}
+		}
+		return perm * TWIST_SIZE + twist;
+	}
+	
+	@Override
+	protected int expand (long index, long[] next)
+	{
+		int perm = (int) (index / TWIST_SIZE), twist = (int) (index % TWIST_SIZE);
+		for (int move = 0; move < CubeTable.QUARTER_SIZE; move++)
+		{
+			next[move] = (long) permMove[perm * CubeTable.QUARTER_SIZE + move] * TWIST_SIZE
+				+ twistMove[twist * CubeTable.QUARTER_SIZE + move];
+		}
+		return CubeTable.QUARTER_SIZE;
+	}
+	
+	@Override
+	protected byte[] generate ()
+	{
+		CubePiece corner = CubePiece.CORNER;
+		int n = corner.count;
+		int[] perm = new int[n], ori = new int[n], temp = new int[n * 2];
+		permMove = new int[PERM_SIZE * CubeTable.QUARTER_SIZE];
+		twistMove = new short[TWIST_SIZE * CubeTable.QUARTER_SIZE];
+		for (int i = 0; i < PERM_SIZE; i++)
+		{
+			for (int move = 0; move < CubeTable.QUARTER_SIZE; move++)
+			{
+				CubePiece.unrank (i, perm, n, n);
+				corner.turn (move, perm, ori, temp);
+				permMove[i * CubeTable.QUARTER_SIZE + move] = (int) CubePiece.rank (perm, n, n);
+			}
+		}
+		for (int i = 0; i < TWIST_SIZE; i++)
+		{
+			for (int move = 0; move < CubeTable.QUARTER_SIZE; move++)
+			{
+				corner.orientation (i, ori);
+				corner.turn (move, perm, ori, temp);
+				twistMove[i * CubeTable.QUARTER_SIZE + move] = (short) corner.orientation (ori);
+			}
+		}
+		byte[] data = super.generate ();
+		// move tables are only needed while generating.
+		permMove = null;
+		twistMove = null;
+		return data;
+	}
+}
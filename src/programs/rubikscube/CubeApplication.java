@@ -42,6 +42,8 @@ public class CubeApplication extends Application
 	private static Stage stage;
 	/** Primary Cube Manager. */
 	private static CubeManager manager;
+	/** Asynchronous solver of primary cube. */
+	private static SolverService service;
 	
 	/**
 	 * Main method for eclipse support.
@@ -123,17 +125,28 @@ public class CubeApplication extends Application
 		slider2.setShowTickMarks (true);
 		slider2.setSnapToTicks (true);
 		slider2.setShowTickLabels (true);
+		Label label = new Label ();
+		label.setWrapText (true);
+		service = new SolverService (manager, progress ->
+		{
+			label.setText (progress.toString ());
+		});
 		Button button2 = new Button ("Test2");
 		button2.setOnAction (event ->
 		{
 			CubeSolution.factor = slider2.getValue ();
 			System.out.println (CubeSolution.factor);
-			System.out.println (new CubeSolution ().apply (manager.getTrios ()));
+			service.solve (new CubeSolution ()).thenAccept (System.out::println);
 		});
 		Button button3 = new Button ("Test3");
 		button3.setOnAction (event ->
 		{
-			System.out.println (new StepSolution.Step1Solution ().apply (manager.getTrios ()));
+			service.solve (new StepSolution ()).thenAccept (System.out::println);
+		});
+		Button cancel = new Button ("Cancel");
+		cancel.setOnAction (event ->
+		{
+			service.cancel ();
 		});
 		Button button4 = new Button ("Test4");
 		button4.setOnAction (event ->
@@ -183,7 +196,8 @@ public class CubeApplication extends Application
 		//combo.getItems ().addAll (CubeUtils.COLOR_LIST);
 		//ListView <String> view = new ListView <> ();
 		//view.getItems ().addAll (CubeUtils.COLOR_LIST);
-		right.getChildren ().addAll (slider1, button1, slider2, button2, button3, button4); //, combo, view);
+		right.getChildren ().addAll (slider1, button1, slider2, button2, button3, cancel, label, button4);
+		//right.getChildren ().addAll (combo, view);
 		
 		
 		// add all regions to pane.
@@ -377,6 +391,7 @@ public class CubeApplication extends Application
 			this.write = write;
 			this.chooser = new FileChooser ();
 			this.chooser.getExtensionFilters ().addAll (new FileChooser.ExtensionFilter ("Text Files", "*.txt"),
+				new FileChooser.ExtensionFilter ("Cube Files", "*" + CubeFile.EXTENSION),
 				new FileChooser.ExtensionFilter ("All Files", "*.*"));
 			this.chooser.setTitle (title);
 		}
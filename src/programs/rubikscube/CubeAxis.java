@@ -1,8 +1,6 @@
 package programs.rubikscube;
 
 import static programs.rubikscube.RubiksCube.*;
-import javafx.geometry.*;
-import javafx.scene.transform.*;
 
 
 /**
@@ -25,11 +23,6 @@ public enum CubeAxis
 	final static CubeAxis Y_PLUS = Y_POS, Y_MINUS = Y_NEG;
 	final static CubeAxis Z_PLUS = Z_POS, Z_MINUS = Z_NEG;
 	
-	/** Defines Point3D objects to be used for Rotational axis. */
-	public final static Point3D[] AXIS = new Point3D[]
-	{
-		Rotate.X_AXIS, Rotate.Y_AXIS, Rotate.Z_AXIS
-	};
 	/** Get 6 directional axis in array. */
 	public final static CubeAxis[] directions = new CubeAxis[]
 	{
@@ -0,0 +1,311 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+
+/**
+ * Headless batch solver, reading cube states from text file and writing solutions as they finish.
+ * <p>
+ * Each line of input is either a scramble, which is sequence of moves applied to solved state,
+ * or packed state of 32 hexadecimal digits, which are {@link CubeState#high()} followed by {@link CubeState#low()}.
+ * Each move is a face accepted by {@link CubeAxis#getCubeAxis(String)}, followed by {@code '} for reverse mode,
+ * or {@code 2} for half turn. Empty lines and comments are skipped, as in {@link CubeUtils#readFile}.
+ * Input may also be binary {@link CubeFile}, which is read as {@link CubeCorpus} and numbered from 1.
+ * <p>
+ * Each line of output is {@code number, length, milliseconds : moves} of single solution,
+ * where number is the line number of input. Lines are written in order of completion.
+ * With {@code -cache}, solutions are answered by {@link CachedSolution} with shared {@link SolutionCache}.
+ * 
+ * @author hasol
+ */
+public class CubeBatch
+{
+	/** Available solutions by name. */
+	final static Map <String, Supplier <CubeSolution>> SOLUTIONS = new LinkedHashMap <> ();
+	/** Number of hexadecimal digits of each half of packed state. */
+	final static int HEX_SIZE = 16;
+	
+	/** Number of solver threads. */
+	static int threads = Runtime.getRuntime ().availableProcessors ();
+	/** Maximum number of states read but not yet solved. */
+	static int inflight = threads * 4;
+	/** Name of solution to use. */
+	static String solution = "two-phase";
+	/** Whether to cache solutions of repeated states. */
+	static boolean cached = false;
+	
+	static
+	{
+		SOLUTIONS.put ("two-phase", TwoPhaseSolution::new);
+		SOLUTIONS.put ("step", StepSolution::new);
+		SOLUTIONS.put ("pattern", PatternSolution::new);
+		SOLUTIONS.put ("anytime", AnytimeSolution::new);
+		SOLUTIONS.put ("bidirectional", BidirectionalSolution::new);
+		SOLUTIONS.put ("bounded", BoundedSolution::new);
+	}
+	
+	/**
+	 * Run batch with given arguments.
+	 * 
+	 * @param args
+	 *        input file and output file, followed by options {@code -threads n}, {@code -inflight n},
+	 *        {@code -solution name}, {@code -cache memory|file} and {@code -endgame depth}.
+	 */
+	public static void main (String... args)
+	{
+		try
+		{
+			if (args.length < 2)
+			{
+				throw new IllegalArgumentException ("Usage: -batch input output [-threads n] [-inflight n] [-solution "
+					+ String.join ("|", SOLUTIONS.keySet ()) + "] [-cache memory|file] [-endgame depth]");
+			}
+			for (int i = 2; i < args.length; i += 2)
+			{
+				String value = i + 1 < args.length ? args[i + 1] : "";
+				switch (args[i])
+				{
+					case "-threads":
+						threads = Integer.parseInt (value);
+						break;
+					case "-inflight":
+						inflight = Integer.parseInt (value);
+						break;
+					case "-solution":
+						solution = value;
+						break;
+					case "-endgame":
+						CubeSolution.endgame = EndgameDatabase.getInstance (Integer.parseInt (value));
+						break;
+					case "-cache":
+						cached = true;
+						SolutionCache.file = value.equals ("memory") ? null : new File (value);
+						break;
+					default:
+						throw new IllegalArgumentException ("Unknown option " + args[i]);
+				}
+			}
+			if (!SOLUTIONS.containsKey (solution))
+			{
+				throw new IllegalArgumentException ("Unknown solution " + solution);
+			}
+			run (new File (args[0]), new File (args[1]));
+		}
+		catch (IllegalArgumentException | IOException e)
+		{
+			System.err.println (e.getMessage ());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread ().interrupt ();
+		}
+	}
+	
+	/**
+	 * Solve every state of input file, and print statistics at the end.
+	 * Invalid state is written as failed, like unsolved one.
+	 * 
+	 * @param input
+	 *        text or binary file to read.
+	 * @param output
+	 *        text file to write.
+	 * @throws IOException
+	 *         if files cannot be read or written.
+	 * @throws InterruptedException
+	 *         if interrupted while waiting.
+	 */
+	static void run (File input, File output) throws IOException, InterruptedException
+	{
+		Supplier <CubeSolution> supplier = SOLUTIONS.get (solution);
+		ThreadLocal <CubeSolution> solutions = ThreadLocal.withInitial (
+			cached ? () -> new CachedSolution (supplier.get ()) : supplier);
+		ExecutorService pool = Executors.newFixedThreadPool (Math.max (1, threads));
+		Semaphore semaphore = new Semaphore (Math.max (1, inflight));
+		ConcurrentLinkedQueue <Long> latencies = new ConcurrentLinkedQueue <> ();
+		long start = System.nanoTime ();
+		int count = 0, failed = 0;
+		try (CubeCorpus corpus = CubeFile.isCubeFile (input) ? new CubeCorpus (input) : null;
+			BufferedReader reader = corpus == null ? new BufferedReader (new FileReader (input)) : null;
+			PrintWriter writer = new PrintWriter (new BufferedWriter (new FileWriter (output))))
+		{
+			String line = null;
+			for (long number = 1; corpus != null ? number <= corpus.size () : (line = reader.readLine ()) != null;
+				number++)
+			{
+				CubeState state;
+				if (corpus != null)
+				{
+					state = corpus.get (number - 1);
+				}
+				else
+				{
+					line = line.trim ();
+					// skip empty line and comments.
+					if (line.length () == 0 || line.startsWith ("#") || line.startsWith ("//"))
+					{
+						continue;
+					}
+					state = parse (line);
+					if (state == null)
+					{ // report invalid state as failed, and go on with the rest.
+						count++;
+						synchronized (writer)
+						{
+							writer.println (number + ", -1, 0 : ");
+						}
+						continue;
+					}
+				}
+				long index = number;
+				semaphore.acquire ();
+				count++;
+				pool.execute ( () ->
+				{
+					try
+					{
+						long time = System.nanoTime ();
+						List <CubeDuo> steps = solutions.get ().apply (state);
+						time = System.nanoTime () - time;
+						// count unsolved state as failed, without its latency.
+						if (steps != null)
+						{
+							latencies.add (time);
+						}
+						String text = index + ", " + (steps == null ? -1 : steps.size ()) + ", " + time / 1000000
+							+ " : " + (steps == null ? "" : format (steps));
+						synchronized (writer)
+						{
+							writer.println (text);
+						}
+					}
+					finally
+					{
+						semaphore.release ();
+					}
+				});
+			}
+			pool.shutdown ();
+			pool.awaitTermination (Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			failed = count - latencies.size ();
+		}
+		finally
+		{
+			pool.shutdownNow ();
+		}
+		long elapsed = System.nanoTime () - start;
+		long[] sorted = new long[latencies.size ()];
+		int i = 0;
+		for (long time : latencies)
+		{
+			sorted[i++] = time;
+		}
+		Arrays.sort (sorted);
+		System.out.printf ("solved %d of %d in %.3f s, %.2f per second%n", sorted.length, count, elapsed / 1e9,
+			sorted.length * 1e9 / elapsed);
+		System.out.printf ("latency p50 %.3f ms, p95 %.3f ms, p99 %.3f ms, failed %d%n", percentile (sorted, 50),
+			percentile (sorted, 95), percentile (sorted, 99), failed);
+		if (cached)
+		{
+			SolutionCache cache = SolutionCache.shared ();
+			System.out.printf ("cache hit ratio %.3f, size, hits, disk hits, misses, evictions, rejections %s%n",
+				cache.hitRatio (), cache);
+			cache.close ();
+		}
+	}
+	
+	/**
+	 * Gets percentile of sorted latencies, by nearest rank.
+	 * 
+	 * @param sorted
+	 *        sorted latencies in nanoseconds.
+	 * @param percent
+	 *        percentile to get.
+	 * @return latency in milliseconds, or zero if empty.
+	 */
+	static double percentile (long[] sorted, int percent)
+	{
+		if (sorted.length == 0)
+		{
+			return 0;
+		}
+		int rank = (int) Math.ceil (sorted.length * percent / 100.0);
+		return sorted[Math.max (rank, 1) - 1] / 1e6;
+	}
+	
+	/**
+	 * Parse single line of input.
+	 * 
+	 * @param line
+	 *        scramble or packed state.
+	 * @return parsed state, or {@code null} if invalid.
+	 */
+	public static CubeState parse (String line)
+	{
+		if (line.matches ("[0-9a-fA-F]{" + HEX_SIZE * 2 + "}"))
+		{
+			long high = Long.parseUnsignedLong (line.substring (0, HEX_SIZE), 16);
+			long low = Long.parseUnsignedLong (line.substring (HEX_SIZE), 16);
+			return CubeState.isValid (high, low) ? new CubeState (high, low) : null;
+		}
+		CubeState state = new CubeState ();
+		for (String token : line.split ("[, ]+"))
+		{
+			int count = 1;
+			boolean mode = true;
+			if (token.endsWith ("2"))
+			{
+				count = 2;
+				token = token.substring (0, token.length () - 1);
+			}
+			else if (token.endsWith ("'"))
+			{
+				mode = false;
+				token = token.substring (0, token.length () - 1);
+			}
+			CubeAxis dir = CubeAxis.getCubeAxis (token);
+			if (dir == null || dir == CubeAxis.CENTER)
+			{
+				return null;
+			}
+			int move = CubeTable.move (new CubeDuo (dir, mode));
+			for (int i = 0; i < count; i++)
+			{
+				state.turn (move);
+			}
+		}
+		return state;
+	}
+	
+	/**
+	 * Format steps in the notation of input, merging two same steps into half turn.
+	 * 
+	 * @param steps
+	 *        steps to format.
+	 * @return formatted moves separated by space.
+	 */
+	public static String format (List <CubeDuo> steps)
+	{
+		StringBuilder builder = new StringBuilder ();
+		CubeDuo prev = null;
+		for (CubeDuo step : steps)
+		{
+			if (prev != null && prev.first == step.first && prev.second.equals (step.second))
+			{ // half turn is the same in both modes.
+				if (!step.second)
+				{
+					builder.setLength (builder.length () - 1);
+				}
+				builder.append ('2');
+				prev = null;
+				continue;
+			}
+			builder.append (builder.length () > 0 ? " " : "").append (step.first).append (step.second ? "" : "'");
+			prev = step;
+		}
+		return builder.toString ();
+	}
+}
@@ -0,0 +1,385 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+import java.util.*;
+
+
+/**
+ * Integer coordinate of some aspect of the cube, such as orientation or permutation of a set of pieces,
+ * with precomputed move table.
+ * Move table is computed by decoding each value into a state, turning it, and encoding it again,
+ * so each coordinate only needs to define conversion from and to {@link CubeState}.
+ * 
+ * @author hasol
+ */
+public abstract class CubeCoordinate
+{
+	/** Number of values. */
+	public final int size;
+	/** Value after each move, at {@code value * MOVE_SIZE + move}. */
+	private final char[] table;
+	
+	/**
+	 * Create coordinate with given number of values. Call {@link #build(int...)} to compute move table.
+	 * 
+	 * @param size
+	 *        number of values, at most 65536.
+	 */
+	protected CubeCoordinate (int size)
+	{
+		this.size = size;
+		this.table = new char[size * CubeTable.MOVE_SIZE];
+	}
+	
+	/**
+	 * Compute coordinate of given state.
+	 * 
+	 * @param state
+	 *        state to read.
+	 * @return coordinate value.
+	 */
+	public abstract int get (CubeState state);
+	
+	/**
+	 * Update given state to have given coordinate value. Pieces not covered by this coordinate are left solved.
+	 * 
+	 * @param value
+	 *        coordinate value.
+	 * @param state
+	 *        solved state to update.
+	 */
+	protected abstract void set (int value, CubeState state);
+	
+	/**
+	 * Compute move table for given moves. Other moves must not be queried.
+	 * 
+	 * @param moves
+	 *        move codes preserving domain of this coordinate.
+	 * @return this coordinate.
+	 */
+	public CubeCoordinate build (int... moves)
+	{
+		for (int value = 0; value < size; value++)
+		{
+			CubeState state = new CubeState ();
+			set (value, state);
+			for (int move : moves)
+			{
+				state.turn (move);
+				table[value * CubeTable.MOVE_SIZE + move] = (char) get (state);
+				state.turn (CubeTable.inverse (move));
+			}
+		}
+		return this;
+	}
+	
+	/**
+	 * Gets coordinate after given move.
+	 * 
+	 * @param value
+	 *        current value.
+	 * @param move
+	 *        move code.
+	 * @return value after the move.
+	 */
+	public int move (int value, int move)
+	{
+		return table[value * CubeTable.MOVE_SIZE + move];
+	}
+	
+	/**
+	 * Create orientation coordinate of all pieces of given type.
+	 * 
+	 * @param piece
+	 *        corner or edge.
+	 * @return new coordinate, with empty move table.
+	 */
+	public static CubeCoordinate orientation (CubePiece piece)
+	{
+		return new CubeCoordinate ((int) Math.pow (piece.size, piece.count - 1))
+		{
+			@Override
+			public int get (CubeState state)
+			{
+				int value = 0;
+				for (int p = 0; p < piece.count - 1; p++)
+				{
+					value = value * piece.size + piece.orientation (state, p);
+				}
+				return value;
+			}
+			
+			@Override
+			protected void set (int value, CubeState state)
+			{
+				int[] perm = new int[piece.count], ori = new int[piece.count];
+				for (int p = 0; p < piece.count; p++)
+				{
+					perm[p] = p;
+				}
+				piece.orientation (value, ori);
+				piece.write (perm, ori, state);
+			}
+		};
+	}
+	
+	/**
+	 * Create permutation coordinate of pieces in given range of positions.
+	 * Domain of this coordinate is states where those positions hold pieces of the same range.
+	 * 
+	 * @param piece
+	 *        corner or edge.
+	 * @param from
+	 *        first position of the range.
+	 * @param to
+	 *        position after the range.
+	 * @return new coordinate, with empty move table.
+	 */
+	public static CubeCoordinate permutation (CubePiece piece, int from, int to)
+	{
+		return permutation (piece, (1 << to) - (1 << from));
+	}
+	
+	/**
+	 * Create permutation coordinate of given pieces within their own positions.
+	 * Domain of this coordinate is states where those positions hold the same set of pieces.
+	 * Setting value only writes those positions, so coordinates of disjoint sets can be combined.
+	 * 
+	 * @param piece
+	 *        corner or edge.
+	 * @param mask
+	 *        bit mask of pieces, which is also bit mask of their positions.
+	 * @return new coordinate, with empty move table.
+	 */
+	public static CubeCoordinate permutation (CubePiece piece, int mask)
+	{
+		int n = Integer.bitCount (mask);
+		return new CubeCoordinate ((int) CubePiece.permutations (n, n))
+		{
+			@Override
+			public int get (CubeState state)
+			{
+				int value = 0, used = 0;
+				for (int p = 0, i = 0; p < piece.count; p++)
+				{
+					if ((mask & 1 << p) != 0)
+					{
+						int k = Integer.bitCount (mask & (1 << piece.piece (state, p)) - 1);
+						value = value * (n - i++) + k - Integer.bitCount (used & ((1 << k) - 1));
+						used |= 1 << k;
+					}
+				}
+				return value;
+			}
+			
+			@Override
+			protected void set (int value, CubeState state)
+			{
+				int[] values = new int[n];
+				CubePiece.unrank (value, values, n, n);
+				for (int p = 0, i = 0; p < piece.count; p++)
+				{
+					if ((mask & 1 << p) != 0)
+					{
+						int k = values[i++], target = 0;
+						for (int bits = mask; k-- >= 0; bits &= bits - 1)
+						{
+							target = Integer.numberOfTrailingZeros (bits);
+						}
+						piece.write (p, target, 0, state);
+					}
+				}
+			}
+		};
+	}
+	
+	/**
+	 * Create coordinate combining given coordinates in mixed radix, with the first as the most significant.
+	 * Coordinates must cover disjoint pieces, and the product of their sizes must not exceed 65536.
+	 * 
+	 * @param parts
+	 *        coordinates to combine.
+	 * @return new coordinate, with empty move table.
+	 */
+	public static CubeCoordinate product (CubeCoordinate... parts)
+	{
+		int size = 1;
+		for (CubeCoordinate part : parts)
+		{
+			size *= part.size;
+		}
+		return new CubeCoordinate (size)
+		{
+			@Override
+			public int get (CubeState state)
+			{
+				int value = 0;
+				for (CubeCoordinate part : parts)
+				{
+					value = value * part.size + part.get (state);
+				}
+				return value;
+			}
+			
+			@Override
+			protected void set (int value, CubeState state)
+			{
+				for (int i = parts.length - 1; i >= 0; i--)
+				{
+					parts[i].set (value % parts[i].size, state);
+					value /= parts[i].size;
+				}
+			}
+		};
+	}
+	
+	/**
+	 * Create coordinate of values of given coordinate reachable from solved state with given moves.
+	 * Values are numbered in increasing order of value of the given coordinate.
+	 * 
+	 * @param base
+	 *        coordinate with move table built for given moves.
+	 * @param moves
+	 *        move codes.
+	 * @return new coordinate, with empty move table.
+	 */
+	public static CubeCoordinate reachable (CubeCoordinate base, int... moves)
+	{
+		boolean[] found = new boolean[base.size];
+		int[] queue = new int[base.size];
+		int head = 0, tail = 0;
+		queue[tail++] = base.get (new CubeState ());
+		found[queue[0]] = true;
+		while (head < tail)
+		{
+			int value = queue[head++];
+			for (int move : moves)
+			{
+				int next = base.move (value, move);
+				if (!found[next])
+				{
+					found[next] = true;
+					queue[tail++] = next;
+				}
+			}
+		}
+		int[] values = Arrays.copyOf (queue, tail), index = new int[base.size];
+		Arrays.sort (values);
+		Arrays.fill (index, -1);
+		for (int i = 0; i < values.length; i++)
+		{
+			index[values[i]] = i;
+		}
+		return new CubeCoordinate (values.length)
+		{
+			@Override
+			public int get (CubeState state)
+			{
+				return index[base.get (state)];
+			}
+			
+			@Override
+			protected void set (int value, CubeState state)
+			{
+				base.set (values[value], state);
+			}
+		};
+	}
+	
+	/**
+	 * Create coordinate of set of positions holding given pieces, regardless of their order.
+	 * 
+	 * @param piece
+	 *        corner or edge.
+	 * @param mask
+	 *        bit mask of tracked pieces.
+	 * @return new coordinate, with empty move table.
+	 */
+	public static CubeCoordinate combination (CubePiece piece, int mask)
+	{
+		int k = Integer.bitCount (mask);
+		return new CubeCoordinate (choose (piece.count, k))
+		{
+			@Override
+			public int get (CubeState state)
+			{
+				int value = 0;
+				for (int p = 0, i = 0; p < piece.count; p++)
+				{
+					if ((mask & 1 << piece.piece (state, p)) != 0)
+					{
+						value += choose (p, ++i);
+					}
+				}
+				return value;
+			}
+			
+			@Override
+			protected void set (int value, CubeState state)
+			{
+				int[] perm = new int[piece.count], ori = new int[piece.count];
+				// positions of tracked pieces, from the last.
+				int positions = 0;
+				for (int p = piece.count - 1, i = k; i > 0; p--)
+				{
+					if (value >= choose (p, i))
+					{
+						value -= choose (p, i--);
+						positions |= 1 << p;
+					}
+				}
+				for (int p = 0, tracked = 0, other = 0; p < piece.count; p++)
+				{
+					if ((positions & 1 << p) != 0)
+					{
+						tracked = next (mask, tracked);
+						perm[p] = tracked++;
+					}
+					else
+					{
+						other = next (~mask, other);
+						perm[p] = other++;
+					}
+				}
+				piece.write (perm, ori, state);
+			}
+		};
+	}
+	
+	/**
+	 * Find next set bit of given mask.
+	 * 
+	 * @param mask
+	 *        bit mask.
+	 * @param from
+	 *        first bit to check.
+	 * @return index of set bit.
+	 */
+	private static int next (int mask, int from)
+	{
+		return Integer.numberOfTrailingZeros (mask >>> from) + from;
+	}
+	
+	/**
+	 * Number of combinations of {@code k} items out of {@code n}.
+	 * 
+	 * @param n
+	 *        number of items.
+	 * @param k
+	 *        number of chosen items.
+	 * @return binomial coefficient, or 0 if {@code k > n}.
+	 */
+	public static int choose (int n, int k)
+	{
+		if (k > n)
+		{
+			return 0;
+		}
+		long value = 1;
+		for (int i = 1; i <= k; i++)
+		{
+			value = value * (n - k + i) / i;
+		}
+		return (int) value;
+	}
+}
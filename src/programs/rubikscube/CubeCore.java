@@ -2,6 +2,7 @@ package programs.rubikscube;
 
 import static programs.rubikscube.RubiksCube.*;
 import javafx.beans.property.*;
+import javafx.geometry.*;
 import javafx.scene.paint.*;
 import javafx.scene.shape.*;
 import javafx.scene.transform.*;
@@ -19,6 +20,11 @@ public class CubeCore extends Box
 	public final static Color DEFAULT = Color.DARKGRAY;
 	/** Multiplier for layer translation. */
 	public final static double layer_factor = 1.5;
+	/** Defines Point3D objects to be used for Rotational axis. */
+	public final static Point3D[] AXIS = new Point3D[]
+	{
+		Rotate.X_AXIS, Rotate.Y_AXIS, Rotate.Z_AXIS
+	};
 	
 	/** x, y, z offset of rotational pivot. */
 	private double[] pivot;
@@ -127,7 +133,7 @@ public class CubeCore extends Box
 		this.axis = new Rotate[DIM];
 		for (int i = 0; i < DIM; i++)
 		{
-			this.axis[i] = new Rotate (0, pivot[X], pivot[Y], pivot[Z], CubeAxis.AXIS[i]);
+			this.axis[i] = new Rotate (0, pivot[X], pivot[Y], pivot[Z], AXIS[i]);
 		}
 		this.getTransforms ().addAll (axis);
 	}
@@ -154,7 +160,7 @@ public class CubeCore extends Box
 	 */
 	public void rotate (int axis, double amount)
 	{
-		this.getTransforms ().add (new Rotate (amount, pivot[X], pivot[Y], pivot[Z], CubeAxis.AXIS[axis]));
+		this.getTransforms ().add (new Rotate (amount, pivot[X], pivot[Y], pivot[Z], AXIS[axis]));
 	}
 	
 	/**
@@ -166,7 +172,7 @@ public class CubeCore extends Box
 	 */
 	public DoubleProperty rotate (int axis)
 	{
-		Rotate rotate = new Rotate (0, pivot[X], pivot[Y], pivot[Z], CubeAxis.AXIS[axis]);
+		Rotate rotate = new Rotate (0, pivot[X], pivot[Y], pivot[Z], AXIS[axis]);
 		this.getTransforms ().add (rotate);
 		return rotate.angleProperty ();
 	}
@@ -0,0 +1,272 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+import java.io.*;
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+
+/**
+ * Read-only corpus of cube states, memory-mapped from {@link CubeFile}.
+ * Opening a corpus maps the file without reading any record, and each record is decoded from the mapped pages
+ * only when accessed, so that corpus of any size is available at once.
+ * Records are accessed by index from multiple threads, and streams split the range of indices for parallel processing.
+ * 
+ * @author hasol
+ */
+public class CubeCorpus implements Closeable
+{
+	/** Mapped file of records. */
+	final CubeFile.Reader reader;
+	
+	/**
+	 * Visitor of packed states, which avoids creating states.
+	 */
+	public interface Visitor
+	{
+		/**
+		 * Visit single record.
+		 * 
+		 * @param index
+		 *        index of record.
+		 * @param high
+		 *        high half of packed state.
+		 * @param low
+		 *        low half of packed state.
+		 */
+		void visit (long index, long high, long low);
+	}
+	
+	/**
+	 * Spliterator over a range of record indices, which splits in halves.
+	 */
+	class Range implements Spliterator <CubeState>
+	{
+		/** Index of next record. */
+		long origin;
+		/** Index after last record. */
+		final long fence;
+		
+		Range (long origin, long fence)
+		{
+			this.origin = origin;
+			this.fence = fence;
+		}
+		
+		@Override
+		public boolean tryAdvance (Consumer <? super CubeState> action)
+		{
+			if (origin >= fence)
+			{
+				return false;
+			}
+			action.accept (reader.state (origin++));
+			return true;
+		}
+		
+		@Override
+		public void forEachRemaining (Consumer <? super CubeState> action)
+		{
+			for (long i = origin; i < fence; i++)
+			{
+				action.accept (reader.state (i));
+			}
+			origin = fence;
+		}
+		
+		@Override
+		public Spliterator <CubeState> trySplit ()
+		{
+			long middle = (origin + fence) >>> 1;
+			if (middle <= origin)
+			{
+				return null;
+			}
+			Range prefix = new Range (origin, middle);
+			origin = middle;
+			return prefix;
+		}
+		
+		@Override
+		public long estimateSize ()
+		{
+			return fence - origin;
+		}
+		
+		@Override
+		public int characteristics ()
+		{
+			return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL;
+		}
+	}
+	
+	/**
+	 * Map given file.
+	 * 
+	 * @param file
+	 *        binary cube file.
+	 * @throws IOException
+	 *         if file is invalid or cannot be mapped.
+	 */
+	public CubeCorpus (File file) throws IOException
+	{
+		this.reader = new CubeFile.Reader (file);
+	}
+	
+	/**
+	 * Gets number of states.
+	 * 
+	 * @return number of states.
+	 */
+	public long size ()
+	{
+		return reader.count ();
+	}
+	
+	/**
+	 * Gets state of given index.
+	 * 
+	 * @param index
+	 *        index of state.
+	 * @return new state.
+	 * @throws IndexOutOfBoundsException
+	 *         if index is out of range.
+	 */
+	public CubeState get (long index)
+	{
+		check (index);
+		return reader.state (index);
+	}
+	
+	/**
+	 * Gets high half of packed state of given index.
+	 * 
+	 * @param index
+	 *        index of state.
+	 * @return high half of packed state.
+	 * @throws IndexOutOfBoundsException
+	 *         if index is out of range.
+	 */
+	public long high (long index)
+	{
+		check (index);
+		return reader.high (index);
+	}
+	
+	/**
+	 * Gets low half of packed state of given index.
+	 * 
+	 * @param index
+	 *        index of state.
+	 * @return low half of packed state.
+	 * @throws IndexOutOfBoundsException
+	 *         if index is out of range.
+	 */
+	public long low (long index)
+	{
+		check (index);
+		return reader.low (index);
+	}
+	
+	/**
+	 * Gets stored solution of given index.
+	 * 
+	 * @param index
+	 *        index of state.
+	 * @return move codes of solution, or {@code null} if not stored.
+	 * @throws IndexOutOfBoundsException
+	 *         if index is out of range.
+	 */
+	public int[] solution (long index)
+	{
+		check (index);
+		return reader.solution (index);
+	}
+	
+	/**
+	 * Check given index of state.
+	 * 
+	 * @param index
+	 *        index of state.
+	 * @throws IndexOutOfBoundsException
+	 *         if index is out of range.
+	 */
+	private void check (long index)
+	{
+		if (index < 0 || index >= reader.count ())
+		{
+			throw new IndexOutOfBoundsException ("Index " + index + " of " + reader.count ());
+		}
+	}
+	
+	/**
+	 * Visit packed states of given range in order.
+	 * 
+	 * @param from
+	 *        index of first state, inclusive.
+	 * @param to
+	 *        index of last state, exclusive.
+	 * @param visitor
+	 *        visitor of each state.
+	 */
+	public void forEach (long from, long to, Visitor visitor)
+	{
+		for (long i = Math.max (from, 0), end = Math.min (to, reader.count ()); i < end; i++)
+		{
+			visitor.visit (i, reader.high (i), reader.low (i));
+		}
+	}
+	
+	/**
+	 * Create spliterator over all states.
+	 * 
+	 * @return new spliterator.
+	 */
+	public Spliterator <CubeState> spliterator ()
+	{
+		return new Range (0, reader.count ());
+	}
+	
+	/**
+	 * Create sequential stream of all states.
+	 * 
+	 * @return new stream.
+	 */
+	public Stream <CubeState> stream ()
+	{
+		return StreamSupport.stream (spliterator (), false);
+	}
+	
+	/**
+	 * Create parallel stream of all states.
+	 * 
+	 * @return new stream.
+	 */
+	public Stream <CubeState> parallelStream ()
+	{
+		return StreamSupport.stream (spliterator (), true);
+	}
+	
+	/**
+	 * Create stream of all indices, which splits as well as the states.
+	 * 
+	 * @return new sequential stream.
+	 */
+	public LongStream indices ()
+	{
+		return LongStream.range (0, reader.count ());
+	}
+	
+	@Override
+	public void close ()
+	{
+		reader.close ();
+	}
+	
+	@Override
+	public String toString ()
+	{
+		return reader.toString ();
+	}
+}
@@ -0,0 +1,446 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+
+/**
+ * Binary file of packed cube states, with optional solution of each state.
+ * <p>
+ * File format is a header of {@link #MAGIC}, {@link #VERSION}, flags, record size and number of records,
+ * followed by fixed-width records. Each record is {@link CubeState#high()} and {@link CubeState#low()},
+ * followed by a solution slot if {@link #SOLUTIONS} flag is set, which is its length, or {@link #UNKNOWN},
+ * and up to {@link #MAX_LENGTH} move codes. All values are big-endian.
+ * Fixed width allows random access to any record, and the whole file is memory-mapped for reading.
+ * 
+ * @author hasol
+ */
+public class CubeFile
+{
+	/** File header values. */
+	public final static int MAGIC = 0x52435346, VERSION = 1;
+	/** Size of file header in bytes. */
+	public final static int HEADER = 24;
+	/** Flag of records with solution slot. */
+	public final static int SOLUTIONS = 1;
+	/** Size of packed state in bytes. */
+	public final static int STATE = 16;
+	/** Maximum number of moves of stored solution. */
+	public final static int MAX_LENGTH = 31;
+	/** Length of solution slot without solution. */
+	public final static int UNKNOWN = 0xFF;
+	/** File name extension of this format. */
+	public final static String EXTENSION = ".cube";
+	
+	/** Size of write buffer in bytes. */
+	static int buffer = 1 << 16;
+	
+	/**
+	 * Gets size of record.
+	 * 
+	 * @param flags
+	 *        flags of the file.
+	 * @return size of record in bytes.
+	 */
+	public static int record (int flags)
+	{
+		return (flags & SOLUTIONS) != 0 ? STATE + 1 + MAX_LENGTH : STATE;
+	}
+	
+	/**
+	 * Evaluate if given file starts with header of this format.
+	 * 
+	 * @param file
+	 *        file to check.
+	 * @return {@code true} if binary cube file, otherwise {@code false}.
+	 */
+	public static boolean isCubeFile (File file)
+	{
+		if (!file.isFile () || file.length () < HEADER)
+		{
+			return false;
+		}
+		try (DataInputStream input = new DataInputStream (new FileInputStream (file)))
+		{
+			return input.readInt () == MAGIC;
+		}
+		catch (IOException e)
+		{
+			return false;
+		}
+	}
+	
+	/**
+	 * Read all states of given file.
+	 * 
+	 * @param file
+	 *        binary cube file.
+	 * @return list of states.
+	 * @throws IOException
+	 *         if file is invalid or cannot be read.
+	 */
+	public static List <CubeState> read (File file) throws IOException
+	{
+		try (Reader reader = new Reader (file))
+		{
+			List <CubeState> list = new ArrayList <> ((int) Math.min (reader.count (), Integer.MAX_VALUE));
+			for (CubeState state : reader)
+			{
+				list.add (state);
+			}
+			return list;
+		}
+	}
+	
+	/**
+	 * Write given states to given file, without solutions.
+	 * 
+	 * @param file
+	 *        file to write.
+	 * @param states
+	 *        states to write.
+	 * @throws IOException
+	 *         if file cannot be written.
+	 */
+	public static void write (File file, Collection <CubeState> states) throws IOException
+	{
+		try (Writer writer = new Writer (file, 0))
+		{
+			for (CubeState state : states)
+			{
+				writer.write (state);
+			}
+		}
+	}
+	
+	/**
+	 * Sequential writer of records through file channel.
+	 * Number of records is written to the header when closed.
+	 */
+	public static class Writer implements Closeable
+	{
+		/** Channel of the file. */
+		private final FileChannel channel;
+		/** Buffer of written bytes. */
+		private final ByteBuffer data;
+		/** Flags of the file. */
+		private final int flags;
+		/** Number of written records. */
+		private long count;
+		
+		/**
+		 * Create or truncate given file for writing.
+		 * 
+		 * @param file
+		 *        file to write.
+		 * @param flags
+		 *        flags of the file, such as {@link CubeFile#SOLUTIONS}.
+		 * @throws IOException
+		 *         if file cannot be opened.
+		 */
+		public Writer (File file, int flags) throws IOException
+		{
+			this.channel = FileChannel.open (file.toPath (), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+			this.flags = flags;
+			this.data = ByteBuffer.allocate (Math.max (buffer, HEADER + record (flags)));
+			data.putInt (MAGIC).putInt (VERSION).putInt (flags).putInt (record (flags)).putLong (0);
+		}
+		
+		/**
+		 * Write state without solution.
+		 * 
+		 * @param state
+		 *        state to write.
+		 * @throws IOException
+		 *         if file cannot be written.
+		 */
+		public void write (CubeState state) throws IOException
+		{
+			write (state.high (), state.low (), null);
+		}
+		
+		/**
+		 * Write state with its solution.
+		 * 
+		 * @param state
+		 *        state to write.
+		 * @param moves
+		 *        move codes of solution, or {@code null} if unknown.
+		 * @throws IOException
+		 *         if file cannot be written.
+		 */
+		public void write (CubeState state, int[] moves) throws IOException
+		{
+			write (state.high (), state.low (), moves);
+		}
+		
+		/**
+		 * Write packed state with its solution.
+		 * 
+		 * @param high
+		 *        high half of packed state.
+		 * @param low
+		 *        low half of packed state.
+		 * @param moves
+		 *        move codes of solution, or {@code null} if unknown. It is ignored without solution slot.
+		 * @throws IOException
+		 *         if file cannot be written.
+		 * @throws IllegalArgumentException
+		 *         if solution is longer than {@link CubeFile#MAX_LENGTH}.
+		 */
+		public void write (long high, long low, int[] moves) throws IOException
+		{
+			if (moves != null && moves.length > MAX_LENGTH)
+			{
+				throw new IllegalArgumentException ("Solution longer than " + MAX_LENGTH);
+			}
+			if (data.remaining () < record (flags))
+			{
+				flush ();
+			}
+			data.putLong (high).putLong (low);
+			if ((flags & SOLUTIONS) != 0)
+			{
+				data.put ((byte) (moves == null ? UNKNOWN : moves.length));
+				for (int i = 0; i < MAX_LENGTH; i++)
+				{
+					data.put ((byte) (moves != null && i < moves.length ? moves[i] : 0));
+				}
+			}
+			count++;
+		}
+		
+		/**
+		 * Write buffered bytes.
+		 * 
+		 * @throws IOException
+		 *         if file cannot be written.
+		 */
+		private void flush () throws IOException
+		{
+			data.flip ();
+			while (data.hasRemaining ())
+			{
+				channel.write (data);
+			}
+			data.clear ();
+		}
+		
+		/**
+		 * Gets number of written records.
+		 * 
+		 * @return number of records.
+		 */
+		public long count ()
+		{
+			return count;
+		}
+		
+		@Override
+		public void close () throws IOException
+		{
+			try
+			{
+				flush ();
+				ByteBuffer size = ByteBuffer.allocate (Long.BYTES).putLong (0, count);
+				while (size.hasRemaining ())
+				{
+					channel.write (size, HEADER - Long.BYTES + size.position ());
+				}
+				channel.force (true);
+			}
+			finally
+			{
+				channel.close ();
+			}
+		}
+	}
+	
+	/**
+	 * Random access reader of memory-mapped records. Records may be read from multiple threads.
+	 */
+	public static class Reader implements Closeable, Iterable <CubeState>
+	{
+		/** Flags of the file. */
+		final int flags;
+		/** Size of record in bytes. */
+		final int record;
+		/** Number of records. */
+		final long count;
+		/** Number of records in each mapped segment, which are smaller than 2 GB. */
+		final int segment;
+		/** Mapped segments of records. */
+		private final ByteBuffer[] segments;
+		
+		/**
+		 * Open and map given file.
+		 * 
+		 * @param file
+		 *        binary cube file.
+		 * @throws IOException
+		 *         if file is invalid or cannot be mapped.
+		 */
+		public Reader (File file) throws IOException
+		{
+			try (FileChannel channel = FileChannel.open (file.toPath (), StandardOpenOption.READ))
+			{
+				ByteBuffer header = ByteBuffer.allocate (HEADER);
+				while (header.hasRemaining () && channel.read (header) >= 0)
+				{
+					continue;
+				}
+				header.flip ();
+				if (header.remaining () < HEADER || header.getInt () != MAGIC || header.getInt () != VERSION)
+				{
+					throw new IOException ("Invalid cube file " + file);
+				}
+				this.flags = header.getInt ();
+				this.record = header.getInt ();
+				this.count = header.getLong ();
+				if (record != record (flags) || count < 0 || channel.size () < HEADER + count * record)
+				{
+					throw new IOException ("Invalid cube file " + file);
+				}
+				this.segment = Integer.MAX_VALUE / record;
+				this.segments = new ByteBuffer[(int) ((count + segment - 1) / segment)];
+				for (int i = 0; i < segments.length; i++)
+				{
+					long first = (long) i * segment, size = Math.min (segment, count - first) * record;
+					segments[i] = channel.map (FileChannel.MapMode.READ_ONLY, HEADER + first * record, size);
+				}
+			}
+		}
+		
+		/**
+		 * Gets number of records.
+		 * 
+		 * @return number of records.
+		 */
+		public long count ()
+		{
+			return count;
+		}
+		
+		/**
+		 * Evaluate if records have solution slot.
+		 * 
+		 * @return {@code true} if solutions are stored, otherwise {@code false}.
+		 */
+		public boolean hasSolutions ()
+		{
+			return (flags & SOLUTIONS) != 0;
+		}
+		
+		/**
+		 * Gets high half of packed state of given record.
+		 * 
+		 * @param index
+		 *        index of record.
+		 * @return high half of packed state.
+		 */
+		public long high (long index)
+		{
+			return segments[(int) (index / segment)].getLong ((int) (index % segment) * record);
+		}
+		
+		/**
+		 * Gets low half of packed state of given record.
+		 * 
+		 * @param index
+		 *        index of record.
+		 * @return low half of packed state.
+		 */
+		public long low (long index)
+		{
+			return segments[(int) (index / segment)].getLong ((int) (index % segment) * record + Long.BYTES);
+		}
+		
+		/**
+		 * Gets state of given record.
+		 * 
+		 * @param index
+		 *        index of record.
+		 * @return new state.
+		 */
+		public CubeState state (long index)
+		{
+			return new CubeState (high (index), low (index));
+		}
+		
+		/**
+		 * Gets solution of given record.
+		 * 
+		 * @param index
+		 *        index of record.
+		 * @return move codes of solution, or {@code null} if unknown or not stored.
+		 */
+		public int[] solution (long index)
+		{
+			if (!hasSolutions ())
+			{
+				return null;
+			}
+			ByteBuffer data = segments[(int) (index / segment)];
+			int offset = (int) (index % segment) * record + STATE, length = data.get (offset) & 0xFF;
+			if (length == UNKNOWN)
+			{
+				return null;
+			}
+			int[] moves = new int[length];
+			for (int i = 0; i < length; i++)
+			{
+				moves[i] = data.get (offset + 1 + i);
+			}
+			return moves;
+		}
+		
+		/**
+		 * Iterate states of all records in order.
+		 */
+		@Override
+		public Iterator <CubeState> iterator ()
+		{
+			return new Iterator <CubeState> ()
+			{
+				/** Index of next record. */
+				long index;
+				
+				@Override
+				public boolean hasNext ()
+				{
+					return index < count;
+				}
+				
+				@Override
+				public CubeState next ()
+				{
+					if (index >= count)
+					{
+						throw new NoSuchElementException ();
+					}
+					return state (index++);
+				}
+			};
+		}
+		
+		/**
+		 * Release mapped segments. They are unmapped once collected.
+		 */
+		@Override
+		public void close ()
+		{
+			Arrays.fill (segments, null);
+		}
+		
+		@Override
+		public String toString ()
+		{
+			return Tuple.OPEN + count + Tuple.COMMA + flags + Tuple.CLOSE;
+		}
+	}
+}
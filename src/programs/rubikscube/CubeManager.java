@@ -320,6 +320,96 @@ public class CubeManager
 		return map;
 	}
 	
+	/**
+	 * Get compact state of this cube, which is used by solutions.
+	 * 
+	 * @return new state.
+	 * @throws IllegalArgumentException
+	 *         if any source pointer is missing.
+	 */
+	public CubeState getState ()
+	{
+		return toState (getTrios ());
+	}
+	
+	/**
+	 * Set CubeLayer data from compact state.
+	 * 
+	 * @param state
+	 *        state to show.
+	 */
+	public void setState (CubeState state)
+	{
+		setTrios (toTrios (state, getTrios ()));
+	}
+	
+	/**
+	 * Create compact state from source pointers of given map.
+	 * 
+	 * @param map
+	 *        map of color and source/destination pointers.
+	 * @return new state.
+	 * @throws IllegalArgumentException
+	 *         if any source pointer is missing.
+	 */
+	public static CubeState toState (CubeMap <CubeTrio> map)
+	{
+		CubeState state = new CubeState ();
+		for (CubeAxis dir : CubeAxis.directions)
+		{
+			HashMap <Integer, CubeTrio> face = map.get (dir);
+			for (Integer key : face.keySet ())
+			{
+				CubeLayer source = face.get (key).second;
+				if (source == null)
+				{
+					throw new IllegalArgumentException ("Missing source on " + dir + " " + key);
+				}
+				state.facelets[CubeTable.index (dir, key)] = (byte) CubeTable.index (source.face, source.position);
+			}
+		}
+		return state;
+	}
+	
+	/**
+	 * Convert given compact state back to map of color and source/destination pointers.
+	 * 
+	 * @param state
+	 *        state to convert.
+	 * @param template
+	 *        any map of the same cube, used to find layers and their original colors.
+	 * @return new CubeMap representing the state.
+	 */
+	public static CubeMap <CubeTrio> toTrios (CubeState state, CubeMap <CubeTrio> template)
+	{
+		CubeLayer[] layers = new CubeLayer[LAYER_SIZE];
+		Color[] colors = new Color[LAYER_SIZE];
+		for (CubeAxis dir : CubeAxis.directions)
+		{
+			HashMap <Integer, CubeTrio> face = template.get (dir);
+			for (Integer key : face.keySet ())
+			{
+				CubeTrio trio = face.get (key);
+				int source = CubeTable.index (trio.second.face, trio.second.position);
+				layers[source] = trio.second;
+				colors[source] = trio.first;
+			}
+		}
+		int[] inverse = new int[LAYER_SIZE];
+		for (int i = 0; i < LAYER_SIZE; i++)
+		{
+			inverse[state.facelets[i]] = i;
+		}
+		CubeMap <CubeTrio> map = new CubeMap <> (CubeAxis.directions);
+		for (int i = 0; i < LAYER_SIZE; i++)
+		{
+			int source = state.facelets[i];
+			CubeTrio trio = new CubeTrio (colors[source], layers[source], layers[inverse[i]]);
+			map.get (CubeTable.FACE[i]).put (CubeTable.POSITION[i], trio);
+		}
+		return map;
+	}
+	
 	/**
 	 * Check integrity of all CubeLayer's pointers.
 	 * 
@@ -587,13 +677,27 @@ public class CubeManager
 	
 	/**
 	 * Update colors of this cube based on the information.
+	 * Shells are stored in facelet index order, so only moved shells are gathered from move table.
 	 * 
 	 * @param action
 	 *        rotation information.
+	 * @see CubeUtils#updateTrioMap(CubeMap, CubeDuo)
 	 */
 	private void updateColors (CubeDuo action)
 	{
-		setTrios (CubeUtils.updateTrioMap (getTrios (), action));
+		int move = CubeTable.move (action);
+		byte[] moved = CubeTable.MOVED[move];
+		byte[] prevgather = CubeTable.GATHER[move], nextgather = CubeTable.GATHER[CubeTable.inverse (move)];
+		CubeTrio[] trios = new CubeTrio[LAYER_SIZE];
+		for (int key : moved)
+		{
+			trios[key] = shells.get (key).getTrio ();
+		}
+		for (int key : moved)
+		{
+			CubeTrio previtem = trios[prevgather[key]], nextitem = trios[nextgather[key]];
+			shells.get (key).setTrio (new CubeTrio (previtem.first, previtem.second, nextitem.third));
+		}
 	}
 	
 	/**
@@ -0,0 +1,421 @@
+package programs.rubikscube;
+
+import static programs.rubikscube.RubiksCube.*;
+import java.util.*;
+
+
+/**
+ * Piece level geometry of the cube, derived from facelet tables of {@link CubeTable}.
+ * Instance of this class describes either the 8 corners or the 12 edges.
+ * Pieces are ordered with {@link CubeAxis#Y_POS} layer first, then {@link CubeAxis#Y_NEG} layer, then middle layer.
+ * <p>
+ * Facelets of each piece are ordered starting from its reference facelet, then in the same rotational sense for
+ * every piece. Orientation of a piece at a position is the slot of that position holding the reference facelet of
+ * the piece, so that a move changes orientation by an amount depending only on the position.
+ * 
+ * @author hasol
+ */
+public final class CubePiece
+{
+	/** Order of axis in one rotational sense, and in the other. */
+	private final static int[] FORWARD =
+	{
+		X, Y, Z
+	}, REVERSE =
+	{
+		X, Z, Y
+	};
+	
+	/** Corners, oriented by facelet on Y axis. */
+	public final static CubePiece CORNER = new CubePiece (2, Y);
+	/** Edges, oriented by facelet on Y axis, or on Z axis for middle layer. */
+	public final static CubePiece EDGE = new CubePiece (1, Y, Z);
+	/** Corners, oriented by facelet on X axis. */
+	public final static CubePiece CORNER_X = new CubePiece (2, X);
+	
+	/** Number of pieces. */
+	public final int count;
+	/** Number of facelets of each piece, which is also number of orientations. */
+	public final int size;
+	/** Ordered facelet indices of each position. */
+	final byte[][] facelets;
+	/** Position of each facelet index, or -1. */
+	private final byte[] piece;
+	/** Slot of each facelet index within its position. */
+	private final byte[] slot;
+	/** Position {@code p} receives piece from {@code source[move][p]} after each move. */
+	final byte[][] source;
+	/** Orientation added to piece moving into each position after each move. */
+	final byte[][] twist;
+	
+	/**
+	 * Build piece tables.
+	 * 
+	 * @param bits
+	 *        number of bits in position of each facelet. 2 for corners, 1 for edges.
+	 * @param axes
+	 *        reference axis in order of priority.
+	 */
+	private CubePiece (int bits, int... axes)
+	{
+		this.size = bits + 1;
+		this.piece = new byte[LAYER_SIZE];
+		this.slot = new byte[LAYER_SIZE];
+		Arrays.fill (piece, (byte) -1);
+		// group facelets by direction of piece, in layer order.
+		CubeAxis[] order =
+		{
+			CubeAxis.Y_POS, CubeAxis.Y_NEG, CubeAxis.Z_POS, CubeAxis.Z_NEG, CubeAxis.X_POS, CubeAxis.X_NEG
+		};
+		ArrayList <byte[]> list = new ArrayList <> ();
+		for (CubeAxis face : order)
+		{
+			for (int i = CubeTable.offset (face), n = i + FACE_SIZE; i < n; i++)
+			{
+				if (Integer.bitCount (CubeTable.POSITION[i]) == bits && piece[i] < 0)
+				{
+					byte[] group = group (face.code | CubeTable.POSITION[i], axes);
+					for (int j = 0; j < size; j++)
+					{
+						piece[group[j]] = (byte) list.size ();
+						slot[group[j]] = (byte) j;
+					}
+					list.add (group);
+				}
+			}
+		}
+		this.count = list.size ();
+		this.facelets = list.toArray (new byte[count][]);
+		// derive piece moves from facelet moves.
+		this.source = new byte[CubeTable.MOVE_SIZE][count];
+		this.twist = new byte[CubeTable.MOVE_SIZE][count];
+		for (int move = 0; move < CubeTable.MOVE_SIZE; move++)
+		{
+			byte[] gather = CubeTable.GATHER[move];
+			for (int p = 0; p < count; p++)
+			{
+				int from = gather[facelets[p][0]];
+				source[move][p] = piece[from];
+				twist[move][p] = slot[from];
+				for (int t = 0; t < size; t++)
+				{ // every facelet of a piece must move consistently.
+					assert gather[facelets[p][t]] == facelets[piece[from]][(t + slot[from]) % size];
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Find ordered facelets of piece at given direction.
+	 * 
+	 * @param direction
+	 *        bitwise OR value of directions of the piece.
+	 * @param axes
+	 *        reference axis in order of priority.
+	 * @return facelet indices, starting from reference facelet.
+	 */
+	private byte[] group (int direction, int... axes)
+	{
+		CubeAxis[] dirs = CubeAxis.getCubeAxis (direction);
+		// sort by axis in the same rotational sense; sense flips with sign product of corners.
+		int[] sign = CubeAxis.sigNum (direction);
+		CubeAxis[] sorted = new CubeAxis[dirs.length];
+		int count = 0;
+		for (int a : sign[X] * sign[Y] * sign[Z] < 0 ? REVERSE : FORWARD)
+		{
+			for (CubeAxis d : dirs)
+			{
+				if (d.axis == a)
+				{
+					sorted[count++] = d;
+				}
+			}
+		}
+		// rotate to start from reference facelet.
+		int start = -1;
+		for (int a : axes)
+		{
+			for (int i = 0; start < 0 && i < sorted.length; i++)
+			{
+				start = sorted[i].axis == a ? i : -1;
+			}
+		}
+		byte[] group = new byte[sorted.length];
+		for (int i = 0; i < sorted.length; i++)
+		{
+			CubeAxis face = sorted[(start + i) % sorted.length];
+			group[i] = (byte) CubeTable.index (face, direction & ~face.code);
+		}
+		return group;
+	}
+	
+	/**
+	 * Read pieces from given state.
+	 * 
+	 * @param state
+	 *        state to read.
+	 * @param perm
+	 *        receives piece at each position.
+	 * @param ori
+	 *        receives orientation of piece at each position.
+	 */
+	public void read (CubeState state, int[] perm, int[] ori)
+	{
+		for (int p = 0; p < count; p++)
+		{
+			int from = state.facelets[facelets[p][0]];
+			perm[p] = piece[from];
+			ori[p] = slot[from];
+		}
+	}
+	
+	/**
+	 * Gets piece at given position of given state.
+	 * 
+	 * @param state
+	 *        state to read.
+	 * @param position
+	 *        position of piece.
+	 * @return piece at the position.
+	 */
+	public int piece (CubeState state, int position)
+	{
+		return piece[state.facelets[facelets[position][0]]];
+	}
+	
+	/**
+	 * Gets orientation of piece at given position of given state.
+	 * 
+	 * @param state
+	 *        state to read.
+	 * @param position
+	 *        position of piece.
+	 * @return orientation of piece at the position.
+	 */
+	public int orientation (CubeState state, int position)
+	{
+		return slot[state.facelets[facelets[position][0]]];
+	}
+	
+	/**
+	 * Write pieces to given state.
+	 * 
+	 * @param perm
+	 *        piece at each position.
+	 * @param ori
+	 *        orientation of piece at each position.
+	 * @param state
+	 *        state to update.
+	 */
+	public void write (int[] perm, int[] ori, CubeState state)
+	{
+		for (int p = 0; p < count; p++)
+		{
+			write (p, perm[p], ori[p], state);
+		}
+	}
+	
+	/**
+	 * Write single piece to given state.
+	 * 
+	 * @param position
+	 *        position to write.
+	 * @param value
+	 *        piece at the position.
+	 * @param ori
+	 *        orientation of the piece.
+	 * @param state
+	 *        state to update.
+	 */
+	public void write (int position, int value, int ori, CubeState state)
+	{
+		for (int t = 0; t < size; t++)
+		{
+			state.facelets[facelets[position][t]] = facelets[value][(t + ori) % size];
+		}
+	}
+	
+	/**
+	 * Find pieces in the middle layer of given axis, which have no facelet on that axis.
+	 * 
+	 * @param axis
+	 *        axis number.
+	 * @return bit mask of pieces.
+	 */
+	public int layer (int axis)
+	{
+		int mask = 0;
+		for (int p = 0; p < count; p++)
+		{
+			boolean middle = true;
+			for (int t = 0; t < size; t++)
+			{
+				middle &= CubeTable.FACE[facelets[p][t]].axis != axis;
+			}
+			mask |= middle ? 1 << p : 0;
+		}
+		return mask;
+	}
+	
+	/**
+	 * Apply given move to pieces.
+	 * 
+	 * @param move
+	 *        move code.
+	 * @param perm
+	 *        piece at each position, updated in place.
+	 * @param ori
+	 *        orientation of piece at each position, updated in place.
+	 * @param temp
+	 *        work array of twice the number of pieces.
+	 */
+	public void turn (int move, int[] perm, int[] ori, int[] temp)
+	{
+		System.arraycopy (perm, 0, temp, 0, count);
+		System.arraycopy (ori, 0, temp, count, count);
+		for (int p = 0; p < count; p++)
+		{
+			int q = source[move][p];
+			perm[p] = temp[q];
+			ori[p] = (temp[count + q] + twist[move][p]) % size;
+		}
+	}
+	
+	/**
+	 * Compute orientation coordinate of pieces. Orientation of the last piece is determined by others.
+	 * 
+	 * @param ori
+	 *        orientation of piece at each position.
+	 * @return coordinate in range {@code [0, size ^ (count - 1))}.
+	 */
+	public int orientation (int[] ori)
+	{
+		int value = 0;
+		for (int p = 0; p < count - 1; p++)
+		{
+			value = value * size + ori[p];
+		}
+		return value;
+	}
+	
+	/**
+	 * Decode orientation coordinate of pieces.
+	 * 
+	 * @param value
+	 *        coordinate computed by {@link #orientation(int[])}.
+	 * @param ori
+	 *        receives orientation of piece at each position.
+	 */
+	public void orientation (int value, int[] ori)
+	{
+		int sum = 0;
+		for (int p = count - 2; p >= 0; p--)
+		{
+			ori[p] = value % size;
+			sum += ori[p];
+			value /= size;
+		}
+		ori[count - 1] = (size - sum % size) % size;
+	}
+	
+	/**
+	 * Number of permutations of {@code k} items out of {@code n}.
+	 * 
+	 * @param n
+	 *        number of items.
+	 * @param k
+	 *        number of chosen items.
+	 * @return {@code n! / (n - k)!}.
+	 */
+	public static long permutations (int n, int k)
+	{
+		long value = 1;
+		for (int i = n - k + 1; i <= n; i++)
+		{
+			value *= i;
+		}
+		return value;
+	}
+	
+	/**
+	 * Rank ordered selection of {@code k} distinct values out of {@code n}.
+	 * With {@code k == n}, this is Lehmer rank of permutation.
+	 * 
+	 * @param values
+	 *        distinct values in range {@code [0, n)}.
+	 * @param n
+	 *        number of possible values.
+	 * @param k
+	 *        number of values to rank.
+	 * @return rank in range {@code [0, permutations (n, k))}.
+	 */
+	public static long rank (int[] values, int n, int k)
+	{
+		long rank = 0;
+		int used = 0;
+		for (int i = 0; i < k; i++)
+		{
+			int value = values[i];
+			int smaller = value - Integer.bitCount (used & ((1 << value) - 1));
+			rank = rank * (n - i) + smaller;
+			used |= 1 << value;
+		}
+		return rank;
+	}
+	
+	/**
+	 * Decode ordered selection ranked by {@link #rank(int[], int, int)}.
+	 * 
+	 * @param rank
+	 *        rank of selection.
+	 * @param values
+	 *        receives selected values.
+	 * @param n
+	 *        number of possible values.
+	 * @param k
+	 *        number of values.
+	 */
+	public static void unrank (long rank, int[] values, int n, int k)
+	{
+		for (int i = k - 1; i >= 0; i--)
+		{
+			values[i] = (int) (rank % (n - i));
+			rank /= n - i;
+		}
+		int used = 0;
+		for (int i = 0; i < k; i++)
+		{
+			int value = 0;
+			for (int smaller = values[i];; value++)
+			{
+				if ((used & 1 << value) == 0 && smaller-- == 0)
+				{
+					break;
+				}
+			}
+			values[i] = value;
+			used |= 1 << value;
+		}
+	}
+	
+	/**
+	 * Gets parity of permutation ranked by {@link #rank(int[], int, int)}, which is the parity of the sum of
+	 * its Lehmer digits.
+	 * 
+	 * @param rank
+	 *        rank of permutation of {@code n} values.
+	 * @param n
+	 *        number of values.
+	 * @return 0 if even permutation, 1 if odd.
+	 */
+	public static int parity (long rank, int n)
+	{
+		int parity = 0;
+		for (int i = 1; i <= n; i++)
+		{
+			parity ^= (int) (rank % i) & 1;
+			rank /= i;
+		}
+		return parity;
+	}
+}
@@ -1,7 +1,8 @@
 package programs.rubikscube;
 
-// import static programs.rubikscube.RubiksCube.*;
+import static programs.rubikscube.RubiksCube.*;
 import java.util.*;
+import java.util.function.*;
 // import javafx.scene.paint.*;
 
 
@@ -10,347 +11,719 @@ import java.util.*;
  * 
  * @author hasol
  */
-public class CubeSolution implements Solution <CubeMap <CubeTrio>, CubeDuo>
+public class CubeSolution implements Solution <CubeState, CubeDuo>
 {
+	static double factor = 10;
 	/**
-	 * Wrapper class to contain result;
-	 * 
-	 * @author hasol
+	 * Maximum number of nodes and states remembered during single search, by {@link SearchNodes} and
+	 * {@link PackedTable} of A*, or by {@link TranspositionTable} of {@link DistributedSolution}.
+	 * Once A* reaches it, new children are refused and {@link #exhausted} is set, so that it may return longer
+	 * solution, or {@code null} when open nodes run out, which does not mean that no solution exists.
 	 */
-	static class Container extends Tuple implements Cloneable, Comparable <Container>
+	static int capacity = 1 << 20;
+	/**
+	 * Maximum number of open nodes of single A* search. Beyond it, the open node of the greatest estimated cost is
+	 * dropped. Its state keeps its path cost, so it is searched again only if reached by shorter path,
+	 * and the search is no longer optimal, or complete, once it drops a node on the optimal path.
+	 * Dropping also sets {@link #exhausted}.
+	 */
+	static int open = 1 << 18;
+	/** Endgame database finishing quarter turn searches near solved state, or {@code null} if not used. */
+	static EndgameDatabase endgame = null;
+	/** Automaton of quarter turns. */
+	final static MoveAutomaton QUARTER;
+	
+	static
 	{
-		/** Comparator for natural ordering sorting. */
-		final static Comparator <Container> comparator;
-		
-		static
-		{
-			comparator = new Comparator <Container> ()
-			{
-				@Override
-				public int compare (Container o1, Container o2)
-				{
-					return o1.compareTo (o2);
-				}
-			};
-		}
-		
-		private final CubeMap <CubeTrio> state;
-		private final LinkedList <CubeDuo> list;
-		private final double priority;
-		
-		Container (CubeMap <CubeTrio> state, LinkedList <CubeDuo> list, double priority)
-		{
-			this.state = state;
-			this.list = list;
-			this.priority = priority;
-		}
-		
-		@Override
-		public Container clone ()
-		{
-			return new Container (state, list, priority);
-		}
-		
-		@Override
-		public int compareTo (Container other)
-		{
-			if (this.priority > other.priority)
-			{
-				return 1;
-			}
-			else if (this.priority < other.priority)
-			{
-				return -1;
-			}
-			else
-			{
-				return 0;
-			}
-		}
-		
-		@Override
-		public String toString ()
+		int[] moves = new int[CubeTable.QUARTER_SIZE];
+		for (int move = 0; move < moves.length; move++)
 		{
-			return OPEN + state.size () + COMMA + list.size () + COMMA + priority + CLOSE;
-		}
-		
-		public static Comparator <Container> getComparator ()
-		{
-			return comparator;
+			moves[move] = move;
 		}
+		QUARTER = MoveAutomaton.of (moves);
 	}
 	
-	final static Boolean[] allBoolean =
-	{
-		Boolean.TRUE, Boolean.FALSE
-	};
-	final static CubeAxis[] allCubeAxis =
-	{
-		CubeAxis.X_POS, CubeAxis.X_NEG, CubeAxis.Y_POS, CubeAxis.Y_NEG, CubeAxis.Z_POS, CubeAxis.Z_NEG
-	};
+	/** Automaton of moves searched by this solution. */
+	MoveAutomaton automaton = QUARTER;
 	
-	static double factor = 10;
+	/** Number of nodes expanded by current search, published for other threads. */
+	volatile long expanded;
+	/** Number of open nodes of current search, published for other threads. */
+	volatile int frontier;
+	/** Cost bound of current search, published for other threads. */
+	volatile int threshold;
+	/** Whether current search refused or dropped nodes for lack of memory, published for other threads. */
+	volatile boolean exhausted;
 	
+	/**
+	 * Compute AI search problem on compact state.
+	 * 
+	 * @param state
+	 *        initial state.
+	 * @return list of steps to reach end state, or {@code null} if not found, which proves that none exists only if
+	 *         not {@link #exhausted}.
+	 */
 	@Override
-	public List <CubeDuo> apply (CubeMap <CubeTrio> map)
+	public List <CubeDuo> apply (CubeState state)
 	{
-		PriorityQueue <Container> queue = new PriorityQueue <> (Container.getComparator ());
-		queue.add (new Container (map, new LinkedList <> (), applyAsDouble (map)));
+		SearchNodes nodes = new SearchNodes (Math.min (1 << 16, capacity), capacity);
+		BucketQueue queue = new BucketQueue ();
+		// path cost of each state, shifted left by one with closed flag.
+		PackedTable table = new PackedTable (Math.min (1 << 16, capacity), capacity);
+		double estimate = estimate (state);
+		int root = nodes.add (SearchNodes.ROOT, 0, 0, estimate, MoveAutomaton.START, state);
+		queue.add (root, BucketQueue.key (estimate), BucketQueue.key (estimate));
+		table.put (state.high (), state.low (), 0);
+		expanded = 0;
+		exhausted = false;
 		// perform A* search.
 		while (!queue.isEmpty ())
 		{
-			Container item = queue.remove ();
+			if (Thread.currentThread ().isInterrupted ())
+			{
+				return null;
+			}
+			int item = queue.remove ();
+			int cost = nodes.cost (item);
+			expanded++;
+			frontier = queue.size ();
+			threshold = (int) nodes.priority (item);
+			CubeState current = nodes.state (item);
+			long high = current.high (), low = current.low ();
+			// skip duplicate reached by better or equal path.
+			int known = table.get (high, low);
+			if (known >= 0 && (known >>> 1 < cost || known == (cost << 1 | 1)))
+			{
+				continue;
+			}
+			table.set (high, low, cost << 1 | 1);
 			// check for end state.
-			if (test (item.state))
+			if (test (current))
 			{
-				return item.list;
+				return nodes.path (item);
+			}
+			// finish with optimal steps of endgame database.
+			List <CubeDuo> tail = endgame == null ? null : endgame.steps (current);
+			if (tail != null)
+			{
+				LinkedList <CubeDuo> list = nodes.path (item);
+				list.addAll (tail);
+				return list;
 			}
 			// schedule for next moves.
-			for (CubeAxis axis : allCubeAxis)
+			for (int move = 0; move < CubeTable.QUARTER_SIZE; move++)
 			{
-				for (Boolean bool : allBoolean)
+				int automaton = QUARTER.next (nodes.automaton (item), move);
+				if (automaton != MoveAutomaton.DEAD)
 				{
-					CubeDuo pair = new CubeDuo (axis, bool);
-					if (test (pair, item.list))
+					CubeState next = current.apply (move);
+					long nextHigh = next.high (), nextLow = next.low ();
+					int value = table.get (nextHigh, nextLow);
+					// skip children reached by better or equal path, or too deep after dropping open nodes.
+					if ((value < 0 || cost + 1 < value >>> 1) && cost < SearchNodes.MAX_COST)
 					{
-						CubeMap <CubeTrio> next = apply (item.state, pair);
-						LinkedList <CubeDuo> list = new LinkedList <> (item.list);
-						list.add (pair);
-						queue.add (new Container (next, list, applyAsDouble (next, list)));
+						if (nodes.isFull () || value < 0 && table.isFull ())
+						{ // refuse child once memory is exhausted, so that the search fails closed.
+							exhausted = true;
+							continue;
+						}
+						table.set (nextHigh, nextLow, cost + 1 << 1);
+						double h = estimate (next), priority = h + (cost + 1) * factor;
+						int node = nodes.add (item, move, cost + 1, priority, automaton, next);
+						queue.add (node, BucketQueue.key (priority), BucketQueue.key (h));
+						if (queue.size () > open)
+						{ // its node is not reclaimed, but its state keeps the path cost.
+							queue.removeLast ();
+							exhausted = true;
+						}
 					}
 				}
 			}
-			System.out.println ("SIZE: " + queue.size ());
 		}
 		return null;
 	}
 	
+	/**
+	 * Generate next state according to the step.
+	 * 
+	 * @param state
+	 *        current state.
+	 * @param step
+	 *        Pair of Direction of face and rotation mode.
+	 * @return new state.
+	 */
 	@Override
-	public CubeMap <CubeTrio> apply (CubeMap <CubeTrio> state, CubeDuo step)
+	public CubeState apply (CubeState state, CubeDuo step)
 	{
-		return CubeUtils.updateTrioMap (state, step);
+		return state.apply (CubeTable.move (step));
 	}
 	
+	/**
+	 * Perform heuristic function on compact state only.
+	 * 
+	 * @param state
+	 *        current state.
+	 * @return estimated cost to reach end state.
+	 */
 	@Override
-	public double applyAsDouble (CubeMap <CubeTrio> state)
+	public double applyAsDouble (CubeState state)
 	{
 		long result = 0;
-		for (CubeAxis axis : state.keySet ())
+		for (int i = 0; i < LAYER_SIZE; i++)
 		{
-			HashMap <Integer, CubeTrio> face = state.get (axis);
-			for (Integer key : face.keySet ())
+			CubeAxis axis = CubeTable.FACE[i], face = CubeTable.FACE[state.facelets[i]];
+			if (face != axis)
 			{
-				CubeTrio value = face.get (key);
-				CubeLayer layer = value.second;
-				if (layer.face != axis)
-				{
-					result += 2;
-					if (layer.face.opposite () == axis)
-					{
-						result += 1;
-					}
-				}
-				else if (layer.position != key)
+				result += 2;
+				if (face.opposite () == axis)
 				{
 					result += 1;
 				}
 			}
+			else if (state.facelets[i] != i)
+			{
+				result += 1;
+			}
 		}
 		return new Long (result).doubleValue ();
 	}
 	
+	/**
+	 * Estimate cost of quarter turn search, replacing heuristic by exact distance of {@link #endgame} near solved
+	 * state, and raising it beyond the depth of the endgame elsewhere, so that the first state of the endgame reached
+	 * by the search is the best one.
+	 * 
+	 * @param state
+	 *        current state.
+	 * @return estimated cost to reach end state.
+	 */
+	double estimate (CubeState state)
+	{
+		double result = applyAsDouble (state);
+		if (endgame != null)
+		{
+			int distance = endgame.distance (state);
+			result = distance < 0 ? Math.max (result, endgame.depth () + 1) : distance;
+		}
+		return result;
+	}
+	
+	/**
+	 * Perform heuristic function on compact state and steps.
+	 * 
+	 * @param state
+	 *        current state.
+	 * @param steps
+	 *        steps taken to reach current state.
+	 * @return estimated cost of the path through current state.
+	 */
 	@Override
-	public double applyAsDouble (CubeMap <CubeTrio> state, List <CubeDuo> steps)
+	public double applyAsDouble (CubeState state, List <CubeDuo> steps)
 	{
 		double result = applyAsDouble (state);
 		result += steps.size () * factor;
 		return result;
 	}
 	
+	/**
+	 * Perform end state evaluation on compact state.
+	 * 
+	 * @param state
+	 *        current state.
+	 * @return {@code true} if end state, otherwise {@code false}.
+	 */
 	@Override
-	public boolean test (CubeMap <CubeTrio> state)
+	public boolean test (CubeState state)
 	{
-		for (CubeAxis axis : state.keySet ())
-		{
-			HashMap <Integer, CubeTrio> face = state.get (axis);
-			for (Integer key : face.keySet ())
-			{
-				CubeTrio value = face.get (key);
-				CubeLayer layer = value.second;
-				if (layer.face != axis || layer.position != key) // || layer.color.equals (value.getKey ()))
-				{
-					return false;
-				}
-			}
-		}
-		return true;
+		return state.isSolved ();
 	}
 	
 	/**
-	 * Evaluate if next step is allowed as next step.
+	 * Evaluate if next step is allowed as next step, by automaton of quarter turns.
+	 * Only the last steps which determine the state of automaton are read.
 	 * 
 	 * @param step
 	 *        the first function argument
 	 * @param steps
 	 *        the second function argument
 	 * @return {@code true} if the input argument matches the predicate, otherwise {@code false}
+	 * @see MoveAutomaton
 	 */
 	public boolean test (CubeDuo step, LinkedList <CubeDuo> steps)
 	{
-		int length = steps.size ();
-		CubeAxis axis = step.first, oppositeAxis = step.first.opposite ();
-		boolean bool = step.second;
-		if (length == 0)
+		int state = MoveAutomaton.START;
+		Iterator <CubeDuo> iterator = steps.listIterator (Math.max (0, steps.size () - QUARTER.depth ()));
+		while (iterator.hasNext () && state != MoveAutomaton.DEAD)
 		{
-			return true;
-		}
-		else
-		{
-			boolean firstMove = true;
-			for (int i = length - 1; i >= 0; i--)
-			{
-				CubeDuo duo = steps.get (i);
-				if (duo.first != axis && duo.first != oppositeAxis)
-				{ // once side is moved, result will be different.
-					return true;
-				}
-				else if (duo.first == axis)
-				{
-					if (firstMove)
-					{ // consecutive same move is allowed.
-						firstMove = false;
-						if (bool != duo.second)
-						{ // reverse operation is not allowed.
-							return false;
-						}
-					}
-					else
-					{ // same move three times is not allowed.
-						return false;
-					}
-				}
-			}
-			return true;
+			state = QUARTER.next (state, CubeTable.move (iterator.next ()));
 		}
+		return state != MoveAutomaton.DEAD && QUARTER.next (state, CubeTable.move (step)) != MoveAutomaton.DEAD;
+	}
+	
+	/**
+	 * Evaluate if next move is allowed after moves on given stack.
+	 * 
+	 * @param move
+	 *        move code of next step.
+	 * @param steps
+	 *        move codes of previous steps.
+	 * @param length
+	 *        number of previous steps on the stack.
+	 * @return {@code true} if allowed, otherwise {@code false}.
+	 * @see MoveAutomaton#test(int, int[], int)
+	 */
+	public boolean test (int move, int[] steps, int length)
+	{
+		return automaton.test (move, steps, length);
 	}
 }
 
 class SimpleSolution extends CubeSolution
 {
 	@Override
-	public double applyAsDouble (CubeMap <CubeTrio> state)
+	public double applyAsDouble (CubeState state)
 	{
 		return 0;
 	}
 }
 
+/**
+ * Iterative deepening A* solution with admissible heuristic.
+ * Moves are applied and undone in place on single mutable state, and the path is kept on reusable move stack,
+ * so deep iterations run in constant memory.
+ * Instance of this class must not be shared between threads.
+ * 
+ * @author hasol
+ */
 class AlternateSolution extends CubeSolution
 {
-	static int minimum = 0, maximum = 10;
+	/** Value returned by search when end state is found. */
+	final static int FOUND = -1;
+	
+	/** Bounds of search depth. Every state is solvable within 26 quarter turns. */
+	static int minimum = 0, maximum = 26;
+	
+	/** Move codes to search. */
+	final int[] moves;
+	/** Whether the moves are all quarter turns, which are the moves of {@link #endgame}. */
+	final boolean quarter;
+	/** Mutable state being searched. */
+	CubeState state;
+	/** Move codes of current path. */
+	int[] stack = new int[maximum];
+	/** Length of path found. */
+	int length;
+	/** Number of nodes visited by current search. */
+	long nodes;
+	/** Whether current search is stopped. */
+	boolean stopped;
+	
+	/**
+	 * Create solution searching quarter turns.
+	 */
+	public AlternateSolution ()
+	{
+		this (QUARTER.moves);
+	}
+	
+	/**
+	 * Create solution searching given moves.
+	 * 
+	 * @param moves
+	 *        move codes to search.
+	 */
+	public AlternateSolution (int... moves)
+	{
+		this.moves = moves;
+		this.automaton = MoveAutomaton.of (moves);
+		this.quarter = Arrays.equals (moves, QUARTER.moves);
+	}
 	
 	@Override
-	public List <CubeDuo> apply (CubeMap <CubeTrio> map)
+	public List <CubeDuo> apply (CubeState map)
 	{
-		for (int level = minimum; level < maximum; level++)
+		state = new CubeState (map);
+		if (stack.length < maximum)
+		{
+			stack = new int[maximum];
+		}
+		int bound = Math.max (minimum, (int) Math.ceil (applyAsDouble (state)));
+		nodes = 0;
+		expanded = 0;
+		stopped = false;
+		while (bound <= maximum)
 		{
-			System.out.println (level);
-			List <CubeDuo> list = apply (map, level);
-			System.out.println ();
-			if (list != null && list.size () > 0)
+			threshold = bound;
+			int next = search (0, bound);
+			if (next == FOUND)
 			{
+				LinkedList <CubeDuo> list = new LinkedList <> ();
+				for (int i = 0; i < length; i++)
+				{
+					CubeTable.steps (stack[i], list);
+				}
 				return list;
 			}
+			bound = next;
 		}
 		return null;
 	}
 	
-	public List <CubeDuo> apply (CubeMap <CubeTrio> map, int level)
+	/**
+	 * Evaluate if current search is interrupted.
+	 * 
+	 * @return {@code true} if the searching thread is interrupted, otherwise {@code false}.
+	 */
+	boolean interrupted ()
+	{
+		return Thread.currentThread ().isInterrupted ();
+	}
+	
+	/**
+	 * Perform depth first search within given bound.
+	 * 
+	 * @param depth
+	 *        number of moves on the stack.
+	 * @param bound
+	 *        maximum estimated path cost to search.
+	 * @return {@link #FOUND} if found, otherwise minimum estimated cost exceeding the bound.
+	 */
+	int search (int depth, int bound)
 	{
-		System.out.print (level + " ");
-		if (test (map))
+		if ((++nodes & 0x3FF) == 0)
+		{ // publish progress, and stop if interrupted.
+			expanded = nodes;
+			stopped |= interrupted ();
+		}
+		if (stopped)
 		{
-			return new LinkedList <> ();
+			return Integer.MAX_VALUE;
 		}
-		else if (level < 0)
+		int cost = depth + (int) Math.ceil (applyAsDouble (state));
+		if (endgame != null && quarter)
+		{ // exact distance near solved state, otherwise farther than the endgame.
+			int distance = endgame.distance (state);
+			cost = distance < 0 ? Math.max (cost, depth + endgame.depth () + 1) : depth + distance;
+			if (distance >= 0 && cost <= bound)
+			{
+				for (int move = endgame.next (state); move >= 0; move = endgame.next (state))
+				{
+					stack[depth++] = move;
+					state.turn (move);
+				}
+				length = depth;
+				return FOUND;
+			}
+		}
+		if (cost > bound)
 		{
-			return null;
+			return cost;
 		}
-		else
+		else if (test (state))
 		{
-			// schedule for next moves.
-			for (CubeAxis axis : allCubeAxis)
+			length = depth;
+			return FOUND;
+		}
+		else if (depth >= maximum)
+		{
+			return Integer.MAX_VALUE;
+		}
+		int least = Integer.MAX_VALUE, current = automaton.state (stack, depth);
+		for (int move : moves)
+		{
+			if (automaton.next (current, move) != MoveAutomaton.DEAD)
 			{
-				for (Boolean bool : allBoolean)
+				stack[depth] = move;
+				state.turn (move);
+				int next = search (depth + 1, bound);
+				if (next == FOUND)
 				{
-					CubeDuo pair = new CubeDuo (axis, bool);
-					CubeMap <CubeTrio> next = apply (map, pair);
-					List <CubeDuo> list = apply (next, level - 1);
-					if (list != null)
-					{
-						list.add (0, pair);
-						return list;
-					}
+					return FOUND;
 				}
+				state.turn (CubeTable.inverse (move));
+				least = Math.min (least, next);
+			}
+		}
+		return least;
+	}
+	
+	/**
+	 * Admissible heuristic. Each quarter turn carries 12 corner facelets and 8 edge facelets by one step,
+	 * so total distance of facelets divided by those numbers never exceeds the actual number of moves.
+	 */
+	@Override
+	public double applyAsDouble (CubeState state)
+	{
+		int corners = 0, edges = 0;
+		for (int i = 0; i < LAYER_SIZE; i++)
+		{
+			int distance = CubeTable.distance (i, state.facelets[i]);
+			if (Integer.bitCount (CubeTable.POSITION[i]) > 1)
+			{
+				corners += distance;
+			}
+			else
+			{
+				edges += distance;
 			}
-			return null;
 		}
+		return Math.max ((corners + 11) / 12, (edges + 7) / 8);
 	}
 }
 
+/**
+ * Iterative deepening A* solution using pattern databases as heuristic.
+ * Each database gives exact distance of an abstraction of the state, so their maximum stays admissible.
+ * 
+ * @author hasol
+ */
+class PatternSolution extends AlternateSolution
+{
+	/** Combined distance of pattern databases. */
+	final ToIntFunction <CubeState> heuristic;
+	
+	/**
+	 * Create solution using corner database and disjoint edge databases.
+	 * Every quarter turn is odd permutation of corners, so distance of any state has the same parity as
+	 * distance of its corners, and the combined estimate is raised to match it.
+	 */
+	public PatternSolution ()
+	{
+		this (parity (CornerDatabase.getInstance (),
+			PatternDatabase.max (EdgeDatabase.getInstance (0), EdgeDatabase.getInstance (1))));
+	}
+	
+	/**
+	 * Combine corner database with other heuristic, matching parity of corner distance.
+	 * 
+	 * @param corners
+	 *        loaded corner database.
+	 * @param others
+	 *        admissible estimate of number of quarter turns.
+	 * @return combined heuristic.
+	 */
+	static ToIntFunction <CubeState> parity (CornerDatabase corners, ToIntFunction <CubeState> others)
+	{
+		return state ->
+		{
+			int corner = corners.applyAsInt (state), result = Math.max (corner, others.applyAsInt (state));
+			return result + ((result ^ corner) & 1);
+		};
+	}
+	
+	/**
+	 * Create solution using given databases.
+	 * 
+	 * @param databases
+	 *        loaded pattern databases.
+	 */
+	public PatternSolution (PatternDatabase... databases)
+	{
+		this (PatternDatabase.max (databases));
+	}
+	
+	/**
+	 * Create solution using given heuristic.
+	 * 
+	 * @param heuristic
+	 *        admissible estimate of number of quarter turns.
+	 */
+	public PatternSolution (ToIntFunction <CubeState> heuristic)
+	{
+		this.heuristic = heuristic;
+	}
+	
+	@Override
+	public double applyAsDouble (CubeState state)
+	{
+		return heuristic.applyAsInt (state);
+	}
+}
+
+/**
+ * Staged solution of Thistlethwaite, solving the cube through chain of nested subgroups.
+ * <ol>
+ * <li>G0 to G1 = &lt;L, R, F2, B2, U, D&gt;, orienting edges.</li>
+ * <li>G1 to G2 = &lt;L, R, F2, B2, U2, D2&gt;, orienting corners and moving L-R middle layer edges into it.</li>
+ * <li>G2 to G3 = &lt;L2, R2, F2, B2, U2, D2&gt;, moving corners into their half turn orbits and edges into their
+ * middle layers.</li>
+ * <li>G3 to solved, with half turns only.</li>
+ * </ol>
+ * Here U-D is {@link RubiksCube#Y} axis, F-B is {@link RubiksCube#Z} axis, and L-R is {@link RubiksCube#X} axis.
+ * Each stage is iterative deepening search over its own moves, with exact distance table of its coordinates,
+ * so the search goes straight to the goal of each stage.
+ * 
+ * @author hasol
+ */
 class StepSolution extends CubeSolution
 {
-	static CubeAxis base_step = CubeAxis.Y_NEG;
+	/** Moves of each stage. */
+	final static int[] STEP1, STEP2 =
+	{
+		0, 1, 2, 3, 4, 5, 6, 7, 12, 13, 14, 15, 16, 17
+	}, STEP3 =
+	{
+		0, 1, 2, 3, 12, 13, 14, 15, 16, 17
+	}, STEP4 =
+	{
+		12, 13, 14, 15, 16, 17
+	};
 	
-	static class Step1Solution extends CubeSolution
+	static
 	{
-		@Override
-		public double applyAsDouble (CubeMap <CubeTrio> state)
+		STEP1 = new int[CubeTable.MOVE_SIZE];
+		for (int move = 0; move < CubeTable.MOVE_SIZE; move++)
 		{
-			long result = 0;
-			
-			HashMap <Integer, CubeTrio> face = state.get (base_step);
-			for (Integer key : face.keySet ())
+			STEP1[move] = move;
+		}
+	}
+	
+	/**
+	 * Coordinates and distance tables, computed or loaded on first use.
+	 */
+	static class Tables
+	{
+		/** Stage 1 coordinate. */
+		final static CubeCoordinate FLIP;
+		/** Stage 2 coordinates. */
+		final static CubeCoordinate TWIST, MIDDLE;
+		/** Stage 3 coordinates. */
+		final static CubeCoordinate CORNER, SLICE;
+		/** Stage 4 coordinates. */
+		final static CubeCoordinate GROUP, EDGE;
+		/** Distance tables of each stage. */
+		final static CoordinateDatabase[] STEPS;
+		
+		static
+		{
+			CubePiece edge = CubePiece.EDGE;
+			FLIP = CubeCoordinate.orientation (edge).build (STEP1);
+			TWIST = CubeCoordinate.orientation (CubePiece.CORNER_X).build (STEP2);
+			MIDDLE = CubeCoordinate.combination (edge, edge.layer (X)).build (STEP2);
+			CORNER = CubeCoordinate.permutation (CubePiece.CORNER, 0, CubePiece.CORNER.count).build (STEP3);
+			SLICE = CubeCoordinate.combination (edge, edge.layer (Y)).build (STEP3);
+			GROUP = CubeCoordinate.reachable (CORNER, STEP4).build (STEP4);
+			EDGE = CubeCoordinate.product (CubeCoordinate.permutation (edge, edge.layer (X)),
+				CubeCoordinate.permutation (edge, edge.layer (Y)), CubeCoordinate.permutation (edge, edge.layer (Z)))
+				.build (STEP4);
+			STEPS = new CoordinateDatabase[]
 			{
-				// TODO revise
-				CubeTrio value = face.get (key);
-				CubeLayer source = value.second;
-				// CubeLayer destination = value.third;
-				if (source.face != base_step)
-				{
-					result += 15;
-				}
-				else if (source.position != key)
+				new CoordinateDatabase ("step1.pdb", FLIP, CubeCoordinate.product (), STEP1),
+				new CoordinateDatabase ("step2.pdb", TWIST, MIDDLE, STEP2),
+				new CoordinateDatabase ("step3.pdb", CORNER, SLICE, STEP3)
 				{
-					if (Integer.bitCount (source.position) > 1)
-					{
-						result += 5;
-					}
-					else
-					{
-						result += 10;
+					@Override
+					protected long[] goals ()
+					{ // any corner permutation made of half turns.
+						long[] goals = new long[GROUP.size];
+						int slice = SLICE.get (new CubeState ());
+						for (int i = 0; i < goals.length; i++)
+						{
+							CubeState state = new CubeState ();
+							GROUP.set (i, state);
+							goals[i] = (long) CORNER.get (state) * SLICE.size + slice;
+						}
+						return goals;
 					}
-				}
+				},
+				new CoordinateDatabase ("step4.pdb", GROUP, EDGE, STEP4)
+			};
+			for (PatternDatabase database : STEPS)
+			{
+				database.load ();
 			}
-			
-			System.out.println (result);
-			return new Long (result).doubleValue ();
+		}
+	}
+	
+	/**
+	 * Single stage, searching its own moves until its table reports zero distance.
+	 */
+	static class StageSolution extends AlternateSolution
+	{
+		/** Distance table of this stage. */
+		final PatternDatabase table;
+		
+		/**
+		 * Create stage.
+		 * 
+		 * @param table
+		 *        loaded distance table.
+		 * @param moves
+		 *        move codes of the stage.
+		 */
+		StageSolution (PatternDatabase table, int... moves)
+		{
+			super (moves);
+			this.table = table;
+		}
+		
+		@Override
+		public double applyAsDouble (CubeState state)
+		{
+			return table.applyAsInt (state);
 		}
 		
 		@Override
-		public boolean test (CubeMap <CubeTrio> state)
+		public boolean test (CubeState state)
+		{
+			return table.applyAsInt (state) == 0;
+		}
+	}
+	
+	/** Stages in order. */
+	final StageSolution[] stages;
+	
+	/**
+	 * Create staged solution.
+	 */
+	public StepSolution ()
+	{
+		this.stages = new StageSolution[]
+		{
+			new StageSolution (Tables.STEPS[0], STEP1), new StageSolution (Tables.STEPS[1], STEP2),
+			new StageSolution (Tables.STEPS[2], STEP3), new StageSolution (Tables.STEPS[3], STEP4)
+		};
+	}
+	
+	@Override
+	public List <CubeDuo> apply (CubeState map)
+	{
+		CubeState state = map;
+		LinkedList <CubeDuo> list = new LinkedList <> ();
+		long nodes = 0;
+		expanded = 0;
+		for (StageSolution stage : stages)
 		{
-			HashMap <Integer, CubeTrio> face = state.get (base_step);
-			for (Integer key : face.keySet ())
+			List <CubeDuo> steps = stage.apply (state);
+			// forward counters of the stage, adding up nodes of all stages.
+			nodes += stage.nodes;
+			expanded = nodes;
+			frontier = stage.frontier;
+			threshold = stage.threshold;
+			if (steps == null)
 			{
-				CubeTrio value = face.get (key);
-				CubeLayer layer = value.second;
-				if (layer.face != base_step || layer.position != key) // || layer.color.equals (value.getKey ()))
-				{
-					return false;
-				}
+				return null;
 			}
-			return true;
+			list.addAll (steps);
+			state = stage.state;
 		}
+		return list;
 	}
 	
+	/**
+	 * Estimate number of moves as distance of the first unfinished stage.
+	 */
+	@Override
+	public double applyAsDouble (CubeState state)
+	{
+		for (StageSolution stage : stages)
+		{
+			int distance = stage.table.applyAsInt (state);
+			if (distance > 0)
+			{
+				return distance;
+			}
+		}
+		return 0;
+	}
 }
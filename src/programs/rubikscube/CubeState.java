@@ -0,0 +1,213 @@
+package programs.rubikscube;
+
+import static programs.rubikscube.RubiksCube.*;
+import java.util.*;
+
+
+/**
+ * Compact primitive representation of the cube for search problems.
+ * Each of the 54 facelets is identified by its index in {@link CubeTable}.
+ * The state stores, for each facelet position, the index of the facelet whose color currently sits there.
+ * Solved state is therefore the identity array.
+ * It has no JavaFX type, so solutions run without the toolkit, and {@link CubeManager} converts it to the 3D view.
+ * 
+ * @author hasol
+ */
+public class CubeState implements Cloneable
+{
+	/** Number of bits of edge orientation in packed representation. */
+	final static int FLIP_BITS = 11;
+	/** Mask of edge orientation in packed representation. */
+	final static long FLIP_MASK = (1 << FLIP_BITS) - 1;
+	/** Number of corner orientations. */
+	final static int TWIST_SIZE = 2187;
+	
+	/** Index of source facelet currently located at each facelet position. */
+	final byte[] facelets;
+	
+	/**
+	 * Create solved state.
+	 */
+	public CubeState ()
+	{
+		this.facelets = new byte[LAYER_SIZE];
+		for (int i = 0; i < LAYER_SIZE; i++)
+		{
+			this.facelets[i] = (byte) i;
+		}
+	}
+	
+	/**
+	 * Create copy of given state.
+	 * 
+	 * @param state
+	 *        state to copy.
+	 */
+	public CubeState (CubeState state)
+	{
+		this.facelets = state.facelets.clone ();
+	}
+	
+	/**
+	 * Create state from packed representation.
+	 * 
+	 * @param high
+	 *        packed corners and edge orientation, from {@link #high()}.
+	 * @param low
+	 *        packed edge permutation, from {@link #low()}.
+	 */
+	public CubeState (long high, long low)
+	{
+		this ();
+		CubePiece corner = CubePiece.CORNER, edge = CubePiece.EDGE;
+		int[] perm = new int[edge.count], ori = new int[edge.count];
+		CubePiece.unrank (low, perm, edge.count, edge.count);
+		edge.orientation ((int) (high & FLIP_MASK), ori);
+		edge.write (perm, ori, this);
+		long corners = high >>> FLIP_BITS;
+		CubePiece.unrank (corners / TWIST_SIZE, perm, corner.count, corner.count);
+		corner.orientation ((int) (corners % TWIST_SIZE), ori);
+		corner.write (perm, ori, this);
+	}
+	
+	/**
+	 * Evaluate if packed representation is a reachable state, with ranks in range and permutations of corners and
+	 * edges of the same parity. Orientation of the last corner and edge is implied by the others, so sums of twist
+	 * and flip always hold.
+	 * 
+	 * @param high
+	 *        packed corners and edge orientation.
+	 * @param low
+	 *        packed edge permutation.
+	 * @return {@code true} if reachable, otherwise {@code false}.
+	 */
+	public static boolean isValid (long high, long low)
+	{
+		CubePiece corner = CubePiece.CORNER, edge = CubePiece.EDGE;
+		long corners = high >>> FLIP_BITS;
+		if (corners >= CubePiece.permutations (corner.count, corner.count) * TWIST_SIZE || low < 0
+			|| low >= CubePiece.permutations (edge.count, edge.count))
+		{
+			return false;
+		}
+		return CubePiece.parity (corners / TWIST_SIZE, corner.count) == CubePiece.parity (low, edge.count);
+	}
+	
+	/**
+	 * Turn this state in place.
+	 * 
+	 * @param move
+	 *        move code.
+	 */
+	public void turn (int move)
+	{
+		CubeTable.turn (facelets, move);
+	}
+	
+	/**
+	 * Create new state from this state turned by given move.
+	 * 
+	 * @param move
+	 *        move code.
+	 * @return new state.
+	 */
+	public CubeState apply (int move)
+	{
+		CubeState next = new CubeState (this);
+		next.turn (move);
+		return next;
+	}
+	
+	/**
+	 * Check if every facelet is at its original position.
+	 * 
+	 * @return {@code true} if solved, otherwise {@code false}.
+	 */
+	public boolean isSolved ()
+	{
+		for (int i = 0; i < LAYER_SIZE; i++)
+		{
+			if (facelets[i] != i)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Pack corners and edge orientation of this state.
+	 * Value is {@code (rank (corner permutation) * 3 ^ 7 + twist) << 11 | flip}, which uses 38 bits.
+	 * 
+	 * @return high half of packed representation.
+	 */
+	public long high ()
+	{
+		CubePiece corner = CubePiece.CORNER, edge = CubePiece.EDGE;
+		long perm = 0;
+		int twist = 0, flip = 0, used = 0;
+		for (int p = 0; p < corner.count; p++)
+		{
+			int value = corner.piece (this, p);
+			perm = perm * (corner.count - p) + value - Integer.bitCount (used & ((1 << value) - 1));
+			used |= 1 << value;
+			if (p < corner.count - 1)
+			{
+				twist = twist * corner.size + corner.orientation (this, p);
+			}
+		}
+		for (int p = 0; p < edge.count - 1; p++)
+		{
+			flip = flip * edge.size + edge.orientation (this, p);
+		}
+		return (perm * TWIST_SIZE + twist) << FLIP_BITS | flip;
+	}
+	
+	/**
+	 * Pack edge permutation of this state.
+	 * Value is Lehmer rank of edge permutation, which uses 29 bits.
+	 * 
+	 * @return low half of packed representation.
+	 */
+	public long low ()
+	{
+		CubePiece edge = CubePiece.EDGE;
+		long perm = 0;
+		int used = 0;
+		for (int p = 0; p < edge.count; p++)
+		{
+			int value = edge.piece (this, p);
+			perm = perm * (edge.count - p) + value - Integer.bitCount (used & ((1 << value) - 1));
+			used |= 1 << value;
+		}
+		return perm;
+	}
+	
+	@Override
+	public CubeState clone ()
+	{
+		return new CubeState (this);
+	}
+	
+	@Override
+	public boolean equals (Object obj)
+	{
+		if (obj != null && obj instanceof CubeState)
+		{
+			return Arrays.equals (facelets, ((CubeState) obj).facelets);
+		}
+		return false;
+	}
+	
+	@Override
+	public int hashCode ()
+	{
+		return Arrays.hashCode (facelets);
+	}
+	
+	@Override
+	public String toString ()
+	{
+		return Arrays.toString (facelets);
+	}
+}
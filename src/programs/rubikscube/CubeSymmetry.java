@@ -0,0 +1,308 @@
+package programs.rubikscube;
+
+import static programs.rubikscube.RubiksCube.*;
+import java.util.*;
+
+
+/**
+ * Symmetries of the whole cube, which are the 24 rotations and 24 reflections mapping the cube onto itself.
+ * Each symmetry is a signed permutation of axes, applied to the face and position of every facelet.
+ * Conjugating a state by a symmetry relabels both positions and facelets, so that solved state is kept,
+ * and the conjugated state needs the same number of moves, since each move is conjugated to another move.
+ * <p>
+ * States conjugate to each other form a symmetry class of up to {@link #SIZE} states,
+ * and {@link #canonical(CubeState)} picks its representative, so that tables and caches whose values depend only on
+ * the distance to solved state can keep one entry per class.
+ * 
+ * @author hasol
+ */
+public final class CubeSymmetry
+{
+	/** Number of symmetries. */
+	public final static int SIZE = 48;
+	/** Identity symmetry. */
+	public final static int IDENTITY = 0;
+	
+	/** Facelet position each position is carried to by each symmetry. */
+	final static byte[][] FACELETS;
+	/** Inverse of each symmetry. */
+	final static int[] INVERSE;
+	/** Conjugate of each move by each symmetry, at {@code symmetry * MOVE_SIZE + move}. */
+	final static int[] MOVES;
+	/** Whether each symmetry is a reflection, which reverses direction of quarter turns. */
+	final static boolean[] MIRROR;
+	
+	static
+	{
+		int[][] orders =
+		{
+			{X, Y, Z}, {X, Z, Y}, {Y, X, Z}, {Y, Z, X}, {Z, X, Y}, {Z, Y, X}
+		};
+		FACELETS = new byte[SIZE][LAYER_SIZE];
+		INVERSE = new int[SIZE];
+		MOVES = new int[SIZE * CubeTable.MOVE_SIZE];
+		MIRROR = new boolean[SIZE];
+		// axis k is carried to axis order[k], multiplied by sign bit k.
+		for (int s = 0; s < SIZE; s++)
+		{
+			int[] order = orders[s / 8];
+			int[] signs = new int[DIM];
+			for (int k = 0; k < DIM; k++)
+			{
+				signs[k] = (s >>> k & 1) == 0 ? 1 : -1;
+			}
+			boolean odd = s / 8 == 1 || s / 8 == 2 || s / 8 == 5;
+			MIRROR[s] = odd ^ Integer.bitCount (s & 7) % 2 == 1;
+			for (int i = 0; i < LAYER_SIZE; i++)
+			{
+				CubeAxis face = CubeTable.FACE[i];
+				int[] position = CubeAxis.sigNum (CubeTable.POSITION[i]), mapped = new int[DIM];
+				for (int k = 0; k < DIM; k++)
+				{
+					mapped[order[k]] = position[k] * signs[k];
+				}
+				CubeAxis next = CubeAxis.getCubeAxis (order[face.axis], face.sign * signs[face.axis]);
+				FACELETS[s][i] = (byte) CubeTable.index (next, CubeAxis.getValue (mapped));
+			}
+		}
+		for (int s = 0; s < SIZE; s++)
+		{
+			for (int t = 0; t < SIZE; t++)
+			{
+				boolean identity = true;
+				for (int i = 0; i < LAYER_SIZE && identity; i++)
+				{
+					identity = FACELETS[s][FACELETS[t][i]] == i;
+				}
+				if (identity)
+				{
+					INVERSE[s] = t;
+				}
+			}
+			for (int move = 0; move < CubeTable.MOVE_SIZE; move++)
+			{
+				MOVES[s * CubeTable.MOVE_SIZE + move] = conjugate (move, FACELETS[s]);
+			}
+		}
+	}
+	
+	/**
+	 * Find move whose gather permutation is conjugate of given move.
+	 * 
+	 * @param move
+	 *        move code.
+	 * @param map
+	 *        facelet position each position is carried to.
+	 * @return conjugate move code.
+	 */
+	private static int conjugate (int move, byte[] map)
+	{
+		byte[] gather = CubeTable.GATHER[move], conjugate = new byte[LAYER_SIZE];
+		for (int i = 0; i < LAYER_SIZE; i++)
+		{
+			conjugate[map[i]] = map[gather[i]];
+		}
+		for (int other = 0; other < CubeTable.MOVE_SIZE; other++)
+		{
+			if (Arrays.equals (conjugate, CubeTable.GATHER[other]))
+			{
+				return other;
+			}
+		}
+		throw new IllegalStateException ("No conjugate of move " + move);
+	}
+	
+	/**
+	 * Gets conjugate of given move by given symmetry.
+	 * Conjugating a state and then turning it by conjugate move equals turning and then conjugating it.
+	 * 
+	 * @param move
+	 *        move code.
+	 * @param symmetry
+	 *        index of symmetry.
+	 * @return conjugate move code.
+	 */
+	public static int conjugate (int move, int symmetry)
+	{
+		return MOVES[symmetry * CubeTable.MOVE_SIZE + move];
+	}
+	
+	/**
+	 * Create conjugate of given state by given symmetry.
+	 * 
+	 * @param state
+	 *        state to conjugate.
+	 * @param symmetry
+	 *        index of symmetry.
+	 * @return new state.
+	 */
+	public static CubeState conjugate (CubeState state, int symmetry)
+	{
+		CubeState result = new CubeState (state);
+		conjugate (state.facelets, symmetry, result.facelets);
+		return result;
+	}
+	
+	/**
+	 * Write conjugate of given facelets by given symmetry.
+	 * 
+	 * @param facelets
+	 *        source facelets of each position.
+	 * @param symmetry
+	 *        index of symmetry.
+	 * @param result
+	 *        receives conjugate facelets.
+	 */
+	static void conjugate (byte[] facelets, int symmetry, byte[] result)
+	{
+		byte[] map = FACELETS[symmetry];
+		for (int i = 0; i < LAYER_SIZE; i++)
+		{
+			result[map[i]] = map[facelets[i]];
+		}
+	}
+	
+	/**
+	 * Find symmetry whose conjugate of given state is the representative of its class,
+	 * which has lexicographically least facelets.
+	 * 
+	 * @param state
+	 *        state to query.
+	 * @return index of symmetry.
+	 */
+	public static int symmetry (CubeState state)
+	{
+		byte[] best = state.facelets.clone (), next = new byte[LAYER_SIZE];
+		int result = IDENTITY;
+		for (int s = 1; s < SIZE; s++)
+		{
+			conjugate (state.facelets, s, next);
+			for (int i = 0; i < LAYER_SIZE; i++)
+			{
+				if (next[i] != best[i])
+				{
+					if (next[i] < best[i])
+					{
+						System.arraycopy (next, 0, best, 0, LAYER_SIZE);
+						result = s;
+					}
+					break;
+				}
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Create representative of symmetry class of given state.
+	 * 
+	 * @param state
+	 *        state to query.
+	 * @return new state, which is the same for all states of the class.
+	 */
+	public static CubeState canonical (CubeState state)
+	{
+		return conjugate (state, symmetry (state));
+	}
+	
+	/**
+	 * Translate steps solving the representative of a class back to steps solving a state of the class.
+	 * 
+	 * @param steps
+	 *        steps solving {@code conjugate (state, symmetry)}.
+	 * @param symmetry
+	 *        index of symmetry from {@link #symmetry(CubeState)}.
+	 * @return new list of steps solving the state.
+	 */
+	public static List <CubeDuo> restore (List <CubeDuo> steps, int symmetry)
+	{
+		LinkedList <CubeDuo> list = new LinkedList <> ();
+		for (CubeDuo step : steps)
+		{
+			CubeTable.steps (conjugate (CubeTable.move (step), INVERSE[symmetry]), list);
+		}
+		return list;
+	}
+	
+	/**
+	 * Gets inverse of given symmetry.
+	 * 
+	 * @param symmetry
+	 *        index of symmetry.
+	 * @return index of inverse symmetry.
+	 */
+	public static int inverse (int symmetry)
+	{
+		return INVERSE[symmetry];
+	}
+	
+	/**
+	 * Evaluate if given symmetry is a reflection.
+	 * 
+	 * @param symmetry
+	 *        index of symmetry.
+	 * @return {@code true} if reflection, otherwise {@code false} if rotation.
+	 */
+	public static boolean mirror (int symmetry)
+	{
+		return MIRROR[symmetry];
+	}
+	
+	/**
+	 * Evaluate if given moves are closed under conjugation by every symmetry.
+	 * 
+	 * @param moves
+	 *        move codes.
+	 * @return {@code true} if closed, otherwise {@code false}.
+	 */
+	public static boolean closed (int... moves)
+	{
+		BitSet set = new BitSet ();
+		for (int move : moves)
+		{
+			set.set (move);
+		}
+		for (int s = 0; s < SIZE; s++)
+		{
+			for (int move : moves)
+			{
+				if (!set.get (conjugate (move, s)))
+				{
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Find symmetries mapping given moves to given moves, which keep the subgroup generated by them.
+	 * 
+	 * @param moves
+	 *        move codes.
+	 * @return indices of symmetries in increasing order, starting with {@link #IDENTITY}.
+	 */
+	public static int[] preserving (int... moves)
+	{
+		BitSet set = new BitSet ();
+		for (int move : moves)
+		{
+			set.set (move);
+		}
+		int[] result = new int[SIZE];
+		int count = 0;
+		for (int s = 0; s < SIZE; s++)
+		{
+			boolean kept = true;
+			for (int move : moves)
+			{
+				kept &= set.get (conjugate (move, s));
+			}
+			if (kept)
+			{
+				result[count++] = s;
+			}
+		}
+		return Arrays.copyOf (result, count);
+	}
+}
@@ -0,0 +1,383 @@
+package programs.rubikscube;
+
+import static programs.rubikscube.RubiksCube.*;
+import java.util.*;
+
+
+/**
+ * Precomputed facelet geometry and move tables.
+ * Every table in this class is computed once at class initialization from {@link #turnAxis},
+ * so that turns on the hot path become table-driven array gathers.
+ * <p>
+ * Facelet index is {@code face * FACE_SIZE + row * CUBE_SIZE + column},
+ * following the order in which {@link CubeManager} creates its shells.
+ * Move code is {@code 2 * face + (mode ? 0 : 1)} for quarter turns, and {@code QUARTER_SIZE + face} for half turns.
+ * 
+ * @author hasol
+ */
+public final class CubeTable
+{
+	/** Number of quarter turn moves. */
+	public final static int QUARTER_SIZE = SIDE_SIZE * 2;
+	/** Number of quarter and half turn moves. */
+	public final static int MOVE_SIZE = QUARTER_SIZE + SIDE_SIZE;
+	/** Number of facelets moved by single turn. */
+	public final static int MOVED_SIZE = FACE_SIZE - 1 + CUBE_SIZE * 4;
+	
+	/** All quarter turn moves, indexed by move code. */
+	final static CubeDuo[] MOVES;
+	/** Face of each facelet index. */
+	final static CubeAxis[] FACE;
+	/** Position respect to the face of each facelet index. */
+	final static int[] POSITION;
+	/** Facelet index of each {@link CubeLayer#hashCode()} value. */
+	private final static byte[] INDEX;
+	/** Position {@code i} receives color from {@code GATHER[move][i]}. */
+	final static byte[][] GATHER;
+	/** Facelet indices moved by each move. */
+	final static byte[][] MOVED;
+	/** Cycles of facelet indices for each move. Each element receives color from the next element of its cycle. */
+	final static byte[][] CYCLES;
+	/** Length of cycles in {@link #CYCLES} for each move. */
+	final static int[] CYCLE_LENGTH;
+	/** Inverse of each move. */
+	private final static int[] INVERSE;
+	/** Minimum number of quarter turns to carry facelet at {@code from} to {@code to}, at {@code from * 54 + to}. */
+	private final static byte[] DISTANCE;
+	
+	static
+	{
+		// index facelets in the same order as CubeManager#init.
+		FACE = new CubeAxis[LAYER_SIZE];
+		POSITION = new int[LAYER_SIZE];
+		INDEX = new byte[CubeAxis.CODE_LIMIT * CubeAxis.CODE_LIMIT];
+		Arrays.fill (INDEX, (byte) -1);
+		int index = 0;
+		for (CubeAxis dir : CubeAxis.directions)
+		{
+			IntDuo axis = dir.otherAxis ();
+			for (int i = 0; i < DIM; i++)
+			{
+				CubeAxis d1 = CubeAxis.getCubeAxis (axis.first, i - 1);
+				for (int j = 0; j < DIM; j++)
+				{
+					CubeAxis d2 = CubeAxis.getCubeAxis (axis.second, j - 1);
+					int value = CubeAxis.getValue (d1, d2);
+					FACE[index] = dir;
+					POSITION[index] = value;
+					INDEX[dir.code * CubeAxis.CODE_LIMIT + value] = (byte) index;
+					index++;
+				}
+			}
+		}
+		// compute quarter turns from geometry, then half turns by composition.
+		MOVES = new CubeDuo[QUARTER_SIZE];
+		GATHER = new byte[MOVE_SIZE][];
+		MOVED = new byte[MOVE_SIZE][];
+		CYCLES = new byte[MOVE_SIZE][];
+		CYCLE_LENGTH = new int[MOVE_SIZE];
+		INVERSE = new int[MOVE_SIZE];
+		for (int move = 0; move < QUARTER_SIZE; move++)
+		{
+			MOVES[move] = new CubeDuo (CubeAxis.directions[move / 2], move % 2 == 0);
+			GATHER[move] = gather (MOVES[move]);
+			INVERSE[move] = move ^ 1;
+		}
+		for (int face = 0; face < SIDE_SIZE; face++)
+		{
+			int move = QUARTER_SIZE + face;
+			byte[] quarter = GATHER[2 * face];
+			GATHER[move] = new byte[LAYER_SIZE];
+			for (int i = 0; i < LAYER_SIZE; i++)
+			{
+				GATHER[move][i] = quarter[quarter[i]];
+			}
+			INVERSE[move] = move;
+		}
+		for (int move = 0; move < MOVE_SIZE; move++)
+		{
+			cycles (move);
+		}
+		// breadth first search over positions of single facelet.
+		DISTANCE = new byte[LAYER_SIZE * LAYER_SIZE];
+		Arrays.fill (DISTANCE, Byte.MAX_VALUE);
+		int[] queue = new int[LAYER_SIZE];
+		for (int from = 0; from < LAYER_SIZE; from++)
+		{
+			int head = 0, tail = 0;
+			DISTANCE[from * LAYER_SIZE + from] = 0;
+			queue[tail++] = from;
+			while (head < tail)
+			{
+				int position = queue[head++];
+				for (int move = 0; move < QUARTER_SIZE; move++)
+				{
+					int next = GATHER[move][position];
+					if (DISTANCE[from * LAYER_SIZE + next] == Byte.MAX_VALUE)
+					{
+						DISTANCE[from * LAYER_SIZE + next] = (byte) (DISTANCE[from * LAYER_SIZE + position] + 1);
+						queue[tail++] = next;
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Compute gather permutation of a quarter turn.
+	 * 
+	 * @param pair
+	 *        Pair of Direction of face and rotation mode.
+	 * @return gather permutation.
+	 */
+	private static byte[] gather (CubeDuo pair)
+	{
+		CubeAxis dir = pair.first;
+		IntDuo other = dir.otherAxis ();
+		byte[] gather = new byte[LAYER_SIZE];
+		for (int i = 0; i < LAYER_SIZE; i++)
+		{
+			gather[i] = (byte) i;
+		}
+		// face: color at key moves to next key.
+		for (int i = offset (dir), n = i + FACE_SIZE; i < n; i++)
+		{
+			int key = turnAxis (pair, other, POSITION[i]);
+			gather[index (dir, key)] = (byte) i;
+		}
+		// shells: color at key on side axis moves to next axis.
+		for (CubeAxis axis : dir.others ())
+		{
+			CubeAxis next = turnAxis (pair, other, axis);
+			for (int i = offset (axis), n = i + FACE_SIZE; i < n; i++)
+			{
+				int key = POSITION[i];
+				if ((key & dir.code) != 0)
+				{
+					key = turnAxis (pair, other, key & ~dir.code | axis.code) & ~next.code | dir.code;
+					gather[index (next, key)] = (byte) i;
+				}
+			}
+		}
+		return gather;
+	}
+	
+	/**
+	 * Compute moved facelets and cycles of given move.
+	 * 
+	 * @param move
+	 *        move code.
+	 */
+	private static void cycles (int move)
+	{
+		byte[] gather = GATHER[move];
+		byte[] moved = new byte[MOVED_SIZE], cycles = new byte[MOVED_SIZE];
+		boolean[] visited = new boolean[LAYER_SIZE];
+		int count = 0, length = 0;
+		for (int i = 0; i < LAYER_SIZE; i++)
+		{
+			if (gather[i] != i)
+			{
+				moved[count++] = (byte) i;
+				if (!visited[i])
+				{
+					int start = length;
+					for (int j = i; !visited[j]; j = gather[j])
+					{
+						visited[j] = true;
+						cycles[length++] = (byte) j;
+					}
+					CYCLE_LENGTH[move] = length - start;
+				}
+			}
+		}
+		assert count == MOVED_SIZE && length == MOVED_SIZE;
+		MOVED[move] = moved;
+		CYCLES[move] = cycles;
+	}
+	
+	/**
+	 * Gets facelet index of given face and position.
+	 * 
+	 * @param face
+	 *        direction of face.
+	 * @param position
+	 *        direction respect to the face.
+	 * @return facelet index.
+	 */
+	public static int index (CubeAxis face, int position)
+	{
+		return INDEX[face.code * CubeAxis.CODE_LIMIT + position];
+	}
+	
+	/**
+	 * Gets index of first facelet on given face.
+	 * 
+	 * @param face
+	 *        direction of face.
+	 * @return facelet index of the corner on negative sides of the face.
+	 */
+	public static int offset (CubeAxis face)
+	{
+		return (face.ordinal () - 1) * FACE_SIZE;
+	}
+	
+	/**
+	 * Gets minimum number of quarter turns to carry single facelet between two positions.
+	 * 
+	 * @param from
+	 *        current facelet index.
+	 * @param to
+	 *        target facelet index.
+	 * @return number of quarter turns.
+	 */
+	public static int distance (int from, int to)
+	{
+		return DISTANCE[from * LAYER_SIZE + to];
+	}
+	
+	/**
+	 * Gets move code of given step.
+	 * 
+	 * @param step
+	 *        Pair of Direction of face and rotation mode.
+	 * @return move code.
+	 */
+	public static int move (CubeDuo step)
+	{
+		return (step.first.ordinal () - 1) * 2 + (step.second ? 0 : 1);
+	}
+	
+	/**
+	 * Gets inverse of given move.
+	 * 
+	 * @param move
+	 *        move code.
+	 * @return move code undoing given move.
+	 */
+	public static int inverse (int move)
+	{
+		return INVERSE[move];
+	}
+	
+	/**
+	 * Gets face index of given move.
+	 * 
+	 * @param move
+	 *        move code.
+	 * @return index of face in {@link CubeAxis#directions}.
+	 */
+	public static int face (int move)
+	{
+		return move < QUARTER_SIZE ? move / 2 : move - QUARTER_SIZE;
+	}
+	
+	/**
+	 * Expand given move into quarter turn steps.
+	 * 
+	 * @param move
+	 *        move code.
+	 * @param list
+	 *        list to append steps.
+	 */
+	public static void steps (int move, List <CubeDuo> list)
+	{
+		if (move < QUARTER_SIZE)
+		{
+			list.add (MOVES[move]);
+		}
+		else
+		{
+			CubeDuo step = MOVES[2 * (move - QUARTER_SIZE)];
+			list.add (step);
+			list.add (step);
+		}
+	}
+	
+	/**
+	 * Determine new key value of given rotation.
+	 * 
+	 * @param pair
+	 *        Pair of Direction of face, and rotation mode.
+	 * @param other
+	 *        Pair of other two axis.
+	 * @param key
+	 *        HashKey of position.
+	 * @return new HashKey of position.
+	 */
+	public static int turnAxis (CubeDuo pair, IntDuo other, int key)
+	{
+		CubeAxis dir = pair.first;
+		boolean mode = pair.second;
+		CubeAxis[] keydir = CubeAxis.getCubeAxis (key);
+		for (int i = 0; i < keydir.length; i++)
+		{
+			if (keydir[i].axis == other.first)
+			{
+				keydir[i] = CubeAxis.getCubeAxis (other.second, dir.sign * keydir[i].sign * (mode ? 1 : -1));
+			}
+			else if (keydir[i].axis == other.second)
+			{
+				keydir[i] = CubeAxis.getCubeAxis (other.first, dir.sign * keydir[i].sign * (mode ? -1 : 1));
+			}
+			else
+			{
+				assert false; // this should be unreachable.
+			}
+		}
+		return CubeAxis.getValue (keydir);
+	}
+	
+	/**
+	 * Determine new axis value of given rotation.
+	 * 
+	 * @param pair
+	 *        Pair of Direction of face, and rotation mode.
+	 * @param other
+	 *        Pair of other two axis.
+	 * @param axis
+	 *        Query axis.
+	 * @return new axis rotated from query axis.
+	 */
+	public static CubeAxis turnAxis (CubeDuo pair, IntDuo other, CubeAxis axis)
+	{
+		CubeAxis dir = pair.first;
+		boolean mode = pair.second;
+		if (axis.axis == other.first)
+		{
+			axis = CubeAxis.getCubeAxis (other.second, dir.sign * axis.sign * (mode ? 1 : -1));
+		}
+		else if (axis.axis == other.second)
+		{
+			axis = CubeAxis.getCubeAxis (other.first, dir.sign * axis.sign * (mode ? -1 : 1));
+		}
+		else
+		{
+			assert false; // this should be unreachable.
+		}
+		return axis;
+	}
+	
+	/**
+	 * Apply given move to facelet array in place.
+	 * 
+	 * @param facelets
+	 *        facelet array to turn.
+	 * @param move
+	 *        move code.
+	 */
+	static void turn (byte[] facelets, int move)
+	{
+		byte[] cycles = CYCLES[move];
+		int length = CYCLE_LENGTH[move];
+		for (int i = 0; i < cycles.length; i += length)
+		{
+			byte temp = facelets[cycles[i]];
+			for (int j = i, n = i + length - 1; j < n; j++)
+			{
+				facelets[cycles[j]] = facelets[cycles[j + 1]];
+			}
+			facelets[cycles[i + length - 1]] = temp;
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+import javafx.scene.paint.*;
+
+
+/**
+ * Immutable container for color, source and destination pointers of a layer.
+ * It belongs to the 3D view, and solutions use {@link CubeState} instead.
+ * 
+ * @author hasol
+ */
+class CubeTrio extends Trio <Color, CubeLayer, CubeLayer>
+{
+	public CubeTrio (Color first, CubeLayer second, CubeLayer third)
+	{
+		super (first, second, third);
+	}
+}
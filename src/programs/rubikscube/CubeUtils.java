@@ -269,6 +269,7 @@ public class CubeUtils
 	
 	/**
 	 * Reads color from text file, and sets color directly to manager.
+	 * Binary {@link CubeFile} sets the state of its first record instead.
 	 * 
 	 * @param file
 	 *        text file to read.
@@ -279,6 +280,17 @@ public class CubeUtils
 	{
 		try
 		{
+			if (CubeFile.isCubeFile (file))
+			{
+				try (CubeFile.Reader reader = new CubeFile.Reader (file))
+				{
+					if (reader.count () > 0)
+					{
+						manager.setState (reader.state (0));
+					}
+				}
+				return;
+			}
 			CubeMap <Color> map = new CubeMap <> ();
 			Scanner scan = new Scanner (file);
 			int count = 0;
@@ -430,6 +442,7 @@ public class CubeUtils
 	
 	/**
 	 * Writes color from text file.
+	 * File name ending with {@link CubeFile#EXTENSION} is written as binary {@link CubeFile} of current state.
 	 * 
 	 * @param file
 	 *        text file to write.
@@ -441,6 +454,14 @@ public class CubeUtils
 	{
 		try
 		{
+			if (file.getName ().endsWith (CubeFile.EXTENSION))
+			{
+				try (CubeFile.Writer writer = new CubeFile.Writer (file, 0))
+				{
+					writer.write (manager.getState ());
+				}
+				return true;
+			}
 			CubeMap <Color> map = manager.getColors ();
 			PrintWriter writer = new PrintWriter (file);
 			writer.println ("// Generated cube file.");
@@ -490,141 +511,47 @@ public class CubeUtils
 	 * @param pair
 	 *        rotation information.
 	 * @return new CubeMap containing updated information.
+	 * @see CubeTable#GATHER
 	 */
 	public static <T> CubeMap <T> updateMap (CubeMap <T> map, CubeDuo pair)
 	{
-		CubeAxis dir = pair.first;
-		IntDuo other = dir.otherAxis ();
+		int move = CubeTable.move (pair);
+		byte[] gather = CubeTable.GATHER[move];
 		CubeMap <T> copy = map.clone ();
-		// update face.
-		HashMap <Integer, T> face = map.get (dir), copyFace = copy.get (dir);
-		for (int key : face.keySet ())
-		{
-			T item = face.get (key);
-			int newkey = turnAxis (pair, other, key);
-			copyFace.put (newkey, item);
-		}
-		// update shells.
-		CubeAxis[] others = dir.others ();
-		for (CubeAxis axis : others)
+		for (int key : CubeTable.MOVED[move])
 		{
-			face = map.get (axis);
-			CubeAxis newaxis = turnAxis (pair, other, axis);
-			copyFace = copy.get (newaxis);
-			for (int key : face.keySet ())
-			{
-				if ((key & dir.code) != 0)
-				{
-					T item = face.get (key);
-					int newkey = turnAxis (pair, other, key & ~dir.code | axis.code) & ~newaxis.code | dir.code;
-					copyFace.put (newkey, item);
-				}
-			}
-		}
-		return copy;
-	}
-	
-	public static CubeMap <CubeTrio> updateTrioMap (CubeMap <CubeTrio> map, CubeDuo pair)
-	{
-		CubeDuo otherPair = new CubeDuo (pair.first, !pair.second);
-		CubeAxis dir = pair.first;
-		IntDuo other = dir.otherAxis ();
-		CubeMap <CubeTrio> copy = map.clone ();
-		// update face.
-		HashMap <Integer, CubeTrio> face = map.get (dir), copyFace = copy.get (dir);
-		for (int key : face.keySet ())
-		{
-			int nextkey = CubeUtils.turnAxis (pair, other, key), prevkey = CubeUtils.turnAxis (otherPair, other, key);
-			CubeTrio nextitem = face.get (nextkey), previtem = face.get (prevkey);
-			copyFace.put (key, new CubeTrio (previtem.first, previtem.second, nextitem.third));
-		}
-		// update shells.
-		CubeAxis[] others = dir.others ();
-		for (CubeAxis axis : others)
-		{
-			face = map.get (axis);
-			CubeAxis nextaxis = CubeUtils.turnAxis (pair, other, axis),
-				prevaxis = CubeUtils.turnAxis (otherPair, other, axis);
-			HashMap <Integer, CubeTrio> nextface = map.get (nextaxis), prevface = map.get (prevaxis);
-			copyFace = copy.get (axis);
-			for (int key : face.keySet ())
-			{
-				if ((key & dir.code) != 0)
-				{
-					int nextkey =
-						CubeUtils.turnAxis (pair, other, key & ~dir.code | axis.code) & ~nextaxis.code | dir.code,
-						prevkey = CubeUtils.turnAxis (otherPair, other, key & ~dir.code | axis.code) & ~prevaxis.code |
-							dir.code;
-					CubeTrio nextitem = nextface.get (nextkey), previtem = prevface.get (prevkey);
-					copyFace.put (key, new CubeTrio (previtem.first, previtem.second, nextitem.third));
-				}
-			}
+			int prev = gather[key];
+			T item = map.get (CubeTable.FACE[prev]).get (CubeTable.POSITION[prev]);
+			copy.get (CubeTable.FACE[key]).put (CubeTable.POSITION[key], item);
 		}
 		return copy;
 	}
 	
 	/**
-	 * Determine new key value of given rotation.
-	 * 
-	 * @param pair
-	 *        Pair of Direction of face, and rotation mode.
-	 * @param other
-	 *        Pair of other two axis.
-	 * @param key
-	 *        HashKey of position.
-	 * @return new HashKey of position.
-	 */
-	public static int turnAxis (CubeDuo pair, IntDuo other, int key)
-	{
-		CubeAxis dir = pair.first;
-		boolean mode = pair.second;
-		CubeAxis[] keydir = CubeAxis.getCubeAxis (key);
-		for (int i = 0; i < keydir.length; i++)
-		{
-			if (keydir[i].axis == other.first)
-			{
-				keydir[i] = CubeAxis.getCubeAxis (other.second, dir.sign * keydir[i].sign * (mode ? 1 : -1));
-			}
-			else if (keydir[i].axis == other.second)
-			{
-				keydir[i] = CubeAxis.getCubeAxis (other.first, dir.sign * keydir[i].sign * (mode ? -1 : 1));
-			}
-			else
-			{
-				assert false; // this should be unreachable.
-			}
-		}
-		return CubeAxis.getValue (keydir);
-	}
-	
-	/**
-	 * Determine new axis value of given rotation.
+	 * Update color and source pointers of given map based on the information.
+	 * Destination pointers are gathered in reverse direction.
 	 * 
+	 * @param map
+	 *        map to update.
 	 * @param pair
-	 *        Pair of Direction of face, and rotation mode.
-	 * @param other
-	 *        Pair of other two axis.
-	 * @param axis
-	 *        Query axis.
-	 * @return new axis rotated from query axis.
+	 *        rotation information.
+	 * @return new CubeMap containing updated information.
+	 * @see CubeTable#GATHER
 	 */
-	public static CubeAxis turnAxis (CubeDuo pair, IntDuo other, CubeAxis axis)
+	public static CubeMap <CubeTrio> updateTrioMap (CubeMap <CubeTrio> map, CubeDuo pair)
 	{
-		CubeAxis dir = pair.first;
-		boolean mode = pair.second;
-		if (axis.axis == other.first)
-		{
-			axis = CubeAxis.getCubeAxis (other.second, dir.sign * axis.sign * (mode ? 1 : -1));
-		}
-		else if (axis.axis == other.second)
-		{
-			axis = CubeAxis.getCubeAxis (other.first, dir.sign * axis.sign * (mode ? -1 : 1));
-		}
-		else
+		int move = CubeTable.move (pair);
+		byte[] prevgather = CubeTable.GATHER[move], nextgather = CubeTable.GATHER[CubeTable.inverse (move)];
+		CubeMap <CubeTrio> copy = map.clone ();
+		for (int key : CubeTable.MOVED[move])
 		{
-			assert false; // this should be unreachable.
+			int prev = prevgather[key], next = nextgather[key];
+			CubeTrio previtem = map.get (CubeTable.FACE[prev]).get (CubeTable.POSITION[prev]),
+				nextitem = map.get (CubeTable.FACE[next]).get (CubeTable.POSITION[next]);
+			copy.get (CubeTable.FACE[key]).put (CubeTable.POSITION[key],
+				new CubeTrio (previtem.first, previtem.second, nextitem.third));
 		}
-		return axis;
+		return copy;
 	}
 	
 	/**
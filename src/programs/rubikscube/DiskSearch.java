@@ -0,0 +1,870 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+
+/**
+ * External memory breadth first search over packed states, whose layers are kept in files instead of heap.
+ * Each layer is a file of distinct records of {@link #RECORD} bytes, sorted by high and then low half of the state.
+ * Successors of a layer are collected in sorted runs of {@link #chunk} records, and the runs are merged into the
+ * next layer, dropping duplicates and states of previous layers found in the same pass, so duplicates are detected
+ * without any table of visited states. At most {@link #fanIn} runs are merged at once.
+ * <p>
+ * Every completed layer is recorded in {@link #MANIFEST} of the directory, and files are replaced atomically,
+ * so an interrupted search resumes from the last completed layer when run again.
+ * States of {@link #of(File, int...)} are expanded by {@link CubeState#turn(int)}, whose move tables are derived
+ * from {@link CubeTable#turnAxis}, as {@link CubeUtils#updateTrioMap(CubeMap, CubeDuo)}.
+ * 
+ * @author hasol
+ */
+public class DiskSearch
+{
+	/** Number of bytes of single record. */
+	public final static int RECORD = 16;
+	/** File name of the manifest. */
+	final static String MANIFEST = "manifest.properties";
+	/** Suffix of incomplete files. */
+	final static String TEMP = ".tmp";
+	
+	/** Number of records sorted in memory for each run. */
+	static int chunk = 1 << 20;
+	/** Size of file buffers in bytes. */
+	static int buffer = 1 << 16;
+	/** Maximum number of runs merged at once. */
+	static int fanIn = 64;
+	
+	/**
+	 * Function computing successors of a packed state.
+	 */
+	public interface Expansion
+	{
+		/**
+		 * Compute successors of given state.
+		 * 
+		 * @param high
+		 *        high half of the state.
+		 * @param low
+		 *        low half of the state.
+		 * @param highs
+		 *        receives high halves of successors.
+		 * @param lows
+		 *        receives low halves of successors.
+		 * @return number of successors.
+		 */
+		int expand (long high, long low, long[] highs, long[] lows);
+	}
+	
+	/**
+	 * Function receiving packed states of a layer.
+	 */
+	public interface Visitor
+	{
+		/**
+		 * Receive given state.
+		 * 
+		 * @param high
+		 *        high half of the state.
+		 * @param low
+		 *        low half of the state.
+		 */
+		void visit (long high, long low);
+	}
+	
+	/** Directory of layer files and manifest. */
+	final File directory;
+	/** Description of the search, which must match the manifest to resume. */
+	final String key;
+	/** Maximum number of successors of single state. */
+	final int degree;
+	/** Whether every move is reversible, so that only two previous layers are needed to detect duplicates. */
+	final boolean reversible;
+	/** Successor function. */
+	final Expansion expansion;
+	/** Whether cube states are stored as representatives of their symmetry class. */
+	boolean symmetric;
+	/** Completed layers and their sizes. */
+	private final Properties manifest = new Properties ();
+	
+	/**
+	 * Create search stored in given directory.
+	 * 
+	 * @param directory
+	 *        directory of layer files and manifest.
+	 * @param key
+	 *        description of the search, which must match the manifest to resume.
+	 * @param degree
+	 *        maximum number of successors of single state.
+	 * @param reversible
+	 *        whether every move is reversible.
+	 * @param expansion
+	 *        successor function.
+	 */
+	public DiskSearch (File directory, String key, int degree, boolean reversible, Expansion expansion)
+	{
+		this.directory = directory;
+		this.key = key;
+		this.degree = degree;
+		this.reversible = reversible;
+		this.expansion = expansion;
+	}
+	
+	/**
+	 * Create search over cube states by given moves.
+	 * 
+	 * @param directory
+	 *        directory of layer files and manifest.
+	 * @param moves
+	 *        move codes.
+	 * @return search.
+	 */
+	public static DiskSearch of (File directory, int... moves)
+	{
+		return of (directory, false, moves);
+	}
+	
+	/**
+	 * Create search over symmetry classes of cube states by given moves, whose layers store only the representative
+	 * of each class from {@link CubeSymmetry#canonical(CubeState)}, up to 48 times fewer than states.
+	 * 
+	 * @param directory
+	 *        directory of layer files and manifest.
+	 * @param moves
+	 *        move codes, which must be closed under conjugation.
+	 * @return search.
+	 * @throws IllegalArgumentException
+	 *         if moves are not closed under conjugation.
+	 */
+	public static DiskSearch symmetric (File directory, int... moves)
+	{
+		if (!CubeSymmetry.closed (moves))
+		{
+			throw new IllegalArgumentException ("Moves not closed under symmetry " + Arrays.toString (moves));
+		}
+		return of (directory, true, moves);
+	}
+	
+	/**
+	 * Create search over cube states by given moves.
+	 * 
+	 * @param directory
+	 *        directory of layer files and manifest.
+	 * @param symmetric
+	 *        whether states are stored as representatives of their symmetry class.
+	 * @param moves
+	 *        move codes.
+	 * @return search.
+	 */
+	private static DiskSearch of (File directory, boolean symmetric, int... moves)
+	{
+		boolean reversible = true;
+		for (int move : moves)
+		{
+			int inverse = CubeTable.inverse (move);
+			reversible &= Arrays.stream (moves).anyMatch (other -> other == inverse);
+		}
+		String key = (symmetric ? "symmetric" : "moves") + Arrays.toString (moves);
+		DiskSearch search = new DiskSearch (directory, key, moves.length, reversible, (high, low, highs, lows) ->
+		{
+			CubeState state = new CubeState (high, low);
+			for (int i = 0; i < moves.length; i++)
+			{
+				CubeState next = state.apply (moves[i]);
+				if (symmetric)
+				{
+					next = CubeSymmetry.canonical (next);
+				}
+				highs[i] = next.high ();
+				lows[i] = next.low ();
+			}
+			return moves.length;
+		});
+		search.symmetric = symmetric;
+		return search;
+	}
+	
+	/**
+	 * Run search from given states, resuming from completed layers of the directory.
+	 * 
+	 * @param limit
+	 *        maximum depth.
+	 * @param goals
+	 *        states of depth zero.
+	 * @return depth of the last completed layer.
+	 * @throws IOException
+	 *         if files cannot be read or written.
+	 */
+	public int run (int limit, CubeState... goals) throws IOException
+	{
+		long[] highs = new long[goals.length], lows = new long[goals.length];
+		for (int i = 0; i < goals.length; i++)
+		{
+			CubeState goal = symmetric ? CubeSymmetry.canonical (goals[i]) : goals[i];
+			highs[i] = goal.high ();
+			lows[i] = goal.low ();
+		}
+		return run (limit, highs, lows);
+	}
+	
+	/**
+	 * Run search from given packed states, resuming from completed layers of the directory.
+	 * Search stops at given depth, or once a layer is empty.
+	 * 
+	 * @param limit
+	 *        maximum depth.
+	 * @param highs
+	 *        high halves of states of depth zero.
+	 * @param lows
+	 *        low halves of states of depth zero.
+	 * @return depth of the last completed layer.
+	 * @throws IOException
+	 *         if files cannot be read or written.
+	 */
+	public synchronized int run (int limit, long[] highs, long[] lows) throws IOException
+	{
+		Files.createDirectories (directory.toPath ());
+		for (File file : directory.listFiles ((dir, name) -> name.endsWith (TEMP)))
+		{
+			Files.delete (file.toPath ());
+		}
+		int depth = resume ();
+		if (depth < 0)
+		{
+			long[] h = highs.clone (), l = lows.clone ();
+			commit (0, spill (h, l, h.length, layer (0)));
+			depth = 0;
+		}
+		while (depth < limit && count (depth) > 0)
+		{
+			if (Thread.currentThread ().isInterrupted ())
+			{
+				throw new InterruptedIOException ();
+			}
+			commit (depth + 1, expand (depth));
+			depth++;
+		}
+		return depth;
+	}
+	
+	/**
+	 * Read manifest, discarding it if it belongs to another search or its layer files are missing.
+	 * 
+	 * @return depth of the last completed layer, or -1 if none.
+	 * @throws IOException
+	 *         if manifest cannot be read.
+	 */
+	private int resume () throws IOException
+	{
+		manifest.clear ();
+		File file = new File (directory, MANIFEST);
+		if (file.isFile ())
+		{
+			try (InputStream input = new FileInputStream (file))
+			{
+				manifest.load (input);
+			}
+		}
+		int depth = Integer.parseInt (manifest.getProperty ("depth", "-1"));
+		boolean valid = key.equals (manifest.getProperty ("key"));
+		for (int i = 0; i <= depth && valid; i++)
+		{
+			valid = layer (i).length () == count (i) * RECORD;
+		}
+		if (!valid)
+		{
+			manifest.clear ();
+			return -1;
+		}
+		return depth;
+	}
+	
+	/**
+	 * Record completed layer in the manifest, replacing it atomically.
+	 * 
+	 * @param depth
+	 *        depth of the layer.
+	 * @param count
+	 *        number of states of the layer.
+	 * @throws IOException
+	 *         if manifest cannot be written.
+	 */
+	private void commit (int depth, long count) throws IOException
+	{
+		manifest.setProperty ("key", key);
+		manifest.setProperty ("depth", Integer.toString (depth));
+		manifest.setProperty ("count." + depth, Long.toString (count));
+		File file = new File (directory, MANIFEST), temp = new File (directory, MANIFEST + TEMP);
+		try (OutputStream output = new FileOutputStream (temp))
+		{
+			manifest.store (output, null);
+		}
+		Files.move (temp.toPath (), file.toPath (), StandardCopyOption.REPLACE_EXISTING,
+			StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/**
+	 * Generate next layer of given layer, by sorted runs of successors and merging them.
+	 * 
+	 * @param depth
+	 *        depth of expanded layer.
+	 * @return number of states of the next layer.
+	 * @throws IOException
+	 *         if files cannot be read or written.
+	 */
+	private long expand (int depth) throws IOException
+	{
+		List <File> runs = new ArrayList <> ();
+		long[] highs = new long[Math.max (chunk, degree)], lows = new long[highs.length];
+		long[] nextHighs = new long[degree], nextLows = new long[degree];
+		int size = 0;
+		try (Reader reader = new Reader (layer (depth)))
+		{
+			while (reader.next ())
+			{
+				int count = expansion.expand (reader.high, reader.low, nextHighs, nextLows);
+				if (size + count > highs.length)
+				{
+					runs.add (run (depth + 1, runs.size ()));
+					spill (highs, lows, size, runs.get (runs.size () - 1));
+					size = 0;
+				}
+				System.arraycopy (nextHighs, 0, highs, size, count);
+				System.arraycopy (nextLows, 0, lows, size, count);
+				size += count;
+			}
+		}
+		runs.add (run (depth + 1, runs.size ()));
+		spill (highs, lows, size, runs.get (runs.size () - 1));
+		highs = lows = null;
+		// merge groups of runs until few enough files are open at once.
+		int number = runs.size ();
+		while (runs.size () > fanIn)
+		{
+			List <File> merged = new ArrayList <> ();
+			for (int i = 0; i < runs.size (); i += fanIn)
+			{
+				File file = run (depth + 1, number++);
+				merge (runs.subList (i, Math.min (i + fanIn, runs.size ())), new ArrayList <> (), file);
+				merged.add (file);
+			}
+			runs = merged;
+		}
+		// merge runs, dropping states of previous layers.
+		List <File> previous = new ArrayList <> ();
+		for (int i = reversible ? Math.max (0, depth - 1) : 0; i <= depth; i++)
+		{
+			previous.add (layer (i));
+		}
+		File temp = new File (directory, layer (depth + 1).getName () + TEMP);
+		long found = merge (runs, previous, temp);
+		Files.move (temp.toPath (), layer (depth + 1).toPath (), StandardCopyOption.REPLACE_EXISTING,
+			StandardCopyOption.ATOMIC_MOVE);
+		return found;
+	}
+	
+	/**
+	 * Merge given sorted runs into given file, dropping duplicates and states of given sorted layers.
+	 * The runs are deleted afterwards.
+	 * 
+	 * @param runs
+	 *        sorted run files.
+	 * @param layers
+	 *        sorted layer files whose states are dropped.
+	 * @param output
+	 *        file to write.
+	 * @return number of written states.
+	 * @throws IOException
+	 *         if files cannot be read or written.
+	 */
+	private static long merge (List <File> runs, List <File> layers, File output) throws IOException
+	{
+		List <Reader> readers = new ArrayList <> ();
+		long found = 0;
+		try (Writer writer = new Writer (output))
+		{
+			PriorityQueue <Reader> heap = new PriorityQueue <> (Reader.comparator);
+			for (File run : runs)
+			{
+				Reader reader = new Reader (run);
+				readers.add (reader);
+				if (reader.next ())
+				{
+					heap.add (reader);
+				}
+			}
+			List <Reader> previous = new ArrayList <> ();
+			for (File layer : layers)
+			{
+				Reader reader = new Reader (layer);
+				readers.add (reader);
+				reader.next ();
+				previous.add (reader);
+			}
+			boolean first = true;
+			long lastHigh = 0, lastLow = 0;
+			while (!heap.isEmpty ())
+			{
+				Reader top = heap.poll ();
+				long high = top.high, low = top.low;
+				if (top.next ())
+				{
+					heap.add (top);
+				}
+				if (!first && high == lastHigh && low == lastLow)
+				{
+					continue;
+				}
+				first = false;
+				lastHigh = high;
+				lastLow = low;
+				if (!contains (previous, high, low))
+				{
+					writer.write (high, low);
+					found++;
+				}
+			}
+		}
+		finally
+		{
+			for (Reader reader : readers)
+			{
+				reader.close ();
+			}
+			for (File run : runs)
+			{
+				Files.deleteIfExists (run.toPath ());
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * Evaluate if any of given sorted readers has given state, advancing them up to it.
+	 * 
+	 * @param readers
+	 *        readers of previous layers.
+	 * @param high
+	 *        high half of the state, not less than that of previous call.
+	 * @param low
+	 *        low half of the state.
+	 * @return {@code true} if found, otherwise {@code false}.
+	 * @throws IOException
+	 *         if files cannot be read.
+	 */
+	private static boolean contains (List <Reader> readers, long high, long low) throws IOException
+	{
+		boolean result = false;
+		for (Reader reader : readers)
+		{
+			while (reader.valid && compare (reader.high, reader.low, high, low) < 0)
+			{
+				reader.next ();
+			}
+			result |= reader.valid && reader.high == high && reader.low == low;
+		}
+		return result;
+	}
+	
+	/**
+	 * Gets run file of given number.
+	 * 
+	 * @param depth
+	 *        depth of the states.
+	 * @param number
+	 *        number of the run.
+	 * @return run file.
+	 */
+	private File run (int depth, int number)
+	{
+		return new File (directory, "run-" + depth + "-" + number + TEMP);
+	}
+	
+	/**
+	 * Sort given states and write distinct ones to given file.
+	 * 
+	 * @param highs
+	 *        high halves of states, sorted in place.
+	 * @param lows
+	 *        low halves of states, sorted in place.
+	 * @param size
+	 *        number of states.
+	 * @param file
+	 *        file to write.
+	 * @return number of distinct states.
+	 * @throws IOException
+	 *         if file cannot be written.
+	 */
+	private static long spill (long[] highs, long[] lows, int size, File file) throws IOException
+	{
+		sort (highs, lows, 0, size);
+		long count = 0;
+		try (Writer writer = new Writer (file))
+		{
+			for (int i = 0; i < size; i++)
+			{
+				if (i == 0 || highs[i] != highs[i - 1] || lows[i] != lows[i - 1])
+				{
+					writer.write (highs[i], lows[i]);
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Sort range of states by quicksort, ordered by {@link #compare(long, long, long, long)}.
+	 * 
+	 * @param highs
+	 *        high halves of states.
+	 * @param lows
+	 *        low halves of states.
+	 * @param from
+	 *        first index, inclusive.
+	 * @param to
+	 *        last index, exclusive.
+	 */
+	static void sort (long[] highs, long[] lows, int from, int to)
+	{
+		while (to - from > 16)
+		{
+			int middle = (from + to) >>> 1;
+			long pivotHigh = highs[middle], pivotLow = lows[middle];
+			int i = from, j = to - 1;
+			while (i <= j)
+			{
+				while (compare (highs[i], lows[i], pivotHigh, pivotLow) < 0)
+				{
+					i++;
+				}
+				while (compare (highs[j], lows[j], pivotHigh, pivotLow) > 0)
+				{
+					j--;
+				}
+				if (i <= j)
+				{
+					swap (highs, lows, i++, j--);
+				}
+			}
+			// recurse into the smaller part, and loop on the larger part.
+			if (j + 1 - from < to - i)
+			{
+				sort (highs, lows, from, j + 1);
+				from = i;
+			}
+			else
+			{
+				sort (highs, lows, i, to);
+				to = j + 1;
+			}
+		}
+		for (int i = from + 1; i < to; i++)
+		{
+			for (int j = i; j > from && compare (highs[j - 1], lows[j - 1], highs[j], lows[j]) > 0; j--)
+			{
+				swap (highs, lows, j - 1, j);
+			}
+		}
+	}
+	
+	/**
+	 * Swap two states.
+	 * 
+	 * @param highs
+	 *        high halves of states.
+	 * @param lows
+	 *        low halves of states.
+	 * @param i
+	 *        index of first state.
+	 * @param j
+	 *        index of second state.
+	 */
+	private static void swap (long[] highs, long[] lows, int i, int j)
+	{
+		long high = highs[i], low = lows[i];
+		highs[i] = highs[j];
+		lows[i] = lows[j];
+		highs[j] = high;
+		lows[j] = low;
+	}
+	
+	/**
+	 * Compare two packed states, by high half and then low half.
+	 * 
+	 * @param high1
+	 *        high half of first state.
+	 * @param low1
+	 *        low half of first state.
+	 * @param high2
+	 *        high half of second state.
+	 * @param low2
+	 *        low half of second state.
+	 * @return negative, zero or positive as first state is less than, equal to or greater than second state.
+	 */
+	static int compare (long high1, long low1, long high2, long low2)
+	{
+		int result = Long.compare (high1, high2);
+		return result != 0 ? result : Long.compare (low1, low2);
+	}
+	
+	/**
+	 * Gets file of given layer.
+	 * 
+	 * @param depth
+	 *        depth of the layer.
+	 * @return layer file.
+	 */
+	File layer (int depth)
+	{
+		return new File (directory, "layer-" + depth + ".bin");
+	}
+	
+	/**
+	 * Gets depth of the last completed layer.
+	 * 
+	 * @return depth, or -1 if none.
+	 */
+	public int depth ()
+	{
+		return Integer.parseInt (manifest.getProperty ("depth", "-1"));
+	}
+	
+	/**
+	 * Gets number of states of given completed layer.
+	 * 
+	 * @param depth
+	 *        depth of the layer.
+	 * @return number of states, or zero if not completed.
+	 */
+	public long count (int depth)
+	{
+		return Long.parseLong (manifest.getProperty ("count." + depth, "0"));
+	}
+	
+	/**
+	 * Visit all states of given completed layer, in sorted order.
+	 * 
+	 * @param depth
+	 *        depth of the layer.
+	 * @param visitor
+	 *        receives each state.
+	 * @throws IOException
+	 *         if file cannot be read.
+	 */
+	public void forEach (int depth, Visitor visitor) throws IOException
+	{
+		try (Reader reader = new Reader (layer (depth)))
+		{
+			while (reader.next ())
+			{
+				visitor.visit (reader.high, reader.low);
+			}
+		}
+	}
+	
+	/**
+	 * Find distance of given state, by binary search of each completed layer.
+	 * 
+	 * @param state
+	 *        state to find.
+	 * @return depth of the layer containing the state, or -1 if not found.
+	 * @throws IOException
+	 *         if files cannot be read.
+	 */
+	public int distance (CubeState state) throws IOException
+	{
+		if (symmetric)
+		{
+			state = CubeSymmetry.canonical (state);
+		}
+		long high = state.high (), low = state.low ();
+		ByteBuffer record = ByteBuffer.allocate (RECORD);
+		for (int depth = 0; depth <= depth (); depth++)
+		{
+			try (FileChannel channel = FileChannel.open (layer (depth).toPath (), StandardOpenOption.READ))
+			{
+				long from = 0, to = count (depth);
+				while (from < to)
+				{
+					long middle = (from + to) >>> 1;
+					record.clear ();
+					while (record.hasRemaining () && channel.read (record, middle * RECORD + record.position ()) >= 0)
+					{
+						continue;
+					}
+					record.flip ();
+					int result = compare (record.getLong (), record.getLong (), high, low);
+					if (result == 0)
+					{
+						return depth;
+					}
+					if (result < 0)
+					{
+						from = middle + 1;
+					}
+					else
+					{
+						to = middle;
+					}
+				}
+			}
+		}
+		return -1;
+	}
+	
+	@Override
+	public String toString ()
+	{
+		return Tuple.OPEN + directory + Tuple.COMMA + key + Tuple.COMMA + depth () + Tuple.CLOSE;
+	}
+	
+	/**
+	 * Buffered sequential reader of records.
+	 */
+	static class Reader implements Closeable
+	{
+		/** Order of current records. */
+		final static Comparator <Reader> comparator = new Comparator <Reader> ()
+		{
+			@Override
+			public int compare (Reader o1, Reader o2)
+			{
+				return DiskSearch.compare (o1.high, o1.low, o2.high, o2.low);
+			}
+		};
+		
+		/** Channel of the file. */
+		private final FileChannel channel;
+		/** Buffer of read bytes. */
+		private final ByteBuffer data = ByteBuffer.allocate (buffer);
+		/** Current record. */
+		long high, low;
+		/** Whether current record is available. */
+		boolean valid;
+		
+		/**
+		 * Open reader of given file.
+		 * 
+		 * @param file
+		 *        file to read.
+		 * @throws IOException
+		 *         if file cannot be opened.
+		 */
+		Reader (File file) throws IOException
+		{
+			this.channel = FileChannel.open (file.toPath (), StandardOpenOption.READ);
+			data.flip ();
+		}
+		
+		/**
+		 * Read next record.
+		 * 
+		 * @return {@code true} if read, otherwise {@code false} at end of file.
+		 * @throws IOException
+		 *         if file cannot be read.
+		 */
+		boolean next () throws IOException
+		{
+			if (data.remaining () < RECORD)
+			{
+				data.compact ();
+				while (data.hasRemaining () && channel.read (data) >= 0)
+				{
+					continue;
+				}
+				data.flip ();
+			}
+			valid = data.remaining () >= RECORD;
+			if (valid)
+			{
+				high = data.getLong ();
+				low = data.getLong ();
+			}
+			return valid;
+		}
+		
+		@Override
+		public void close () throws IOException
+		{
+			channel.close ();
+		}
+	}
+	
+	/**
+	 * Buffered sequential writer of records.
+	 */
+	static class Writer implements Closeable
+	{
+		/** Channel of the file. */
+		private final FileChannel channel;
+		/** Buffer of written bytes. */
+		private final ByteBuffer data = ByteBuffer.allocate (buffer);
+		
+		/**
+		 * Create or truncate given file for writing.
+		 * 
+		 * @param file
+		 *        file to write.
+		 * @throws IOException
+		 *         if file cannot be opened.
+		 */
+		Writer (File file) throws IOException
+		{
+			this.channel = FileChannel.open (file.toPath (), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		}
+		
+		/**
+		 * Write record.
+		 * 
+		 * @param high
+		 *        high half of the state.
+		 * @param low
+		 *        low half of the state.
+		 * @throws IOException
+		 *         if file cannot be written.
+		 */
+		void write (long high, long low) throws IOException
+		{
+			if (data.remaining () < RECORD)
+			{
+				flush ();
+			}
+			data.putLong (high).putLong (low);
+		}
+		
+		/**
+		 * Write buffered bytes.
+		 * 
+		 * @throws IOException
+		 *         if file cannot be written.
+		 */
+		private void flush () throws IOException
+		{
+			data.flip ();
+			while (data.hasRemaining ())
+			{
+				channel.write (data);
+			}
+			data.clear ();
+		}
+		
+		@Override
+		public void close () throws IOException
+		{
+			try
+			{
+				flush ();
+				channel.force (true);
+			}
+			finally
+			{
+				channel.close ();
+			}
+		}
+	}
+}
@@ -0,0 +1,291 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+
+/**
+ * Hash distributed A* solution, searching with the same weighted priority as {@link CubeSolution}.
+ * Each state is owned by a worker chosen by its hash, and only the owner keeps it in its open list and
+ * {@link TranspositionTable}, so no lock is shared between workers.
+ * Generated states are sent to their owners through lock-free {@link ConcurrentLinkedQueue}.
+ * <p>
+ * Search terminates when the counter of pending states, which are sent, queued or being expanded, reaches zero.
+ * Once an end state is found, states with priority not better than it are discarded,
+ * so the result has the least priority, as the first end state of sequential search.
+ * If {@link #symmetric}, states conjugate by {@link CubeSymmetry} share one entry, which is sound since they need
+ * the same number of moves, so a state reached by worse path than its conjugate cannot lead to better solution.
+ * Instance of this class must not be shared between threads, but its workers run on their own threads.
+ * 
+ * @author hasol
+ */
+public class DistributedSolution extends CubeSolution
+{
+	/** Number of worker threads. */
+	static int threads = Runtime.getRuntime ().availableProcessors ();
+	/** Whether states are owned and remembered by their symmetry class, instead of each state. */
+	static boolean symmetric = false;
+	
+	/** Workers of current search. */
+	Worker[] workers;
+	/** Number of states sent but not yet finished by their owners. */
+	final AtomicLong pending = new AtomicLong ();
+	/** Best end state found, or {@code null}. */
+	final AtomicReference <Node> solution = new AtomicReference <> ();
+	
+	/**
+	 * Searched state with its path.
+	 */
+	static class Node
+	{
+		/** State of this node. */
+		final CubeState state;
+		/** Key of the state in {@link TranspositionTable}, which is representative of its class if symmetric. */
+		final CubeState key;
+		/** Move codes of the path to this node. */
+		final int[] path;
+		/** Estimated remaining cost of this node. */
+		final double estimate;
+		/** Estimated cost of the path through this node. */
+		final double priority;
+		
+		Node (CubeState state, int[] path, double estimate)
+		{
+			this.state = state;
+			this.key = symmetric ? CubeSymmetry.canonical (state) : state;
+			this.path = path;
+			this.estimate = estimate;
+			this.priority = estimate + path.length * factor;
+		}
+	}
+	
+	@Override
+	public List <CubeDuo> apply (CubeState state)
+	{
+		int count = Math.max (1, threads);
+		workers = new Worker[count];
+		for (int i = 0; i < count; i++)
+		{
+			workers[i] = new Worker (Math.max (TranspositionTable.WAYS, capacity / count));
+		}
+		pending.set (0);
+		solution.set (null);
+		send (new Node (new CubeState (state), new int[0], applyAsDouble (state)));
+		Thread[] list = new Thread[count];
+		for (int i = 0; i < count; i++)
+		{
+			list[i] = new Thread (workers[i], "solution-" + i);
+			list[i].setDaemon (true);
+			list[i].start ();
+		}
+		try
+		{
+			for (Thread thread : list)
+			{
+				thread.join ();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			for (Thread thread : list)
+			{
+				thread.interrupt ();
+			}
+			Thread.currentThread ().interrupt ();
+			return null;
+		}
+		finally
+		{
+			workers = null;
+		}
+		Node node = solution.get ();
+		if (node == null)
+		{
+			return null;
+		}
+		LinkedList <CubeDuo> steps = new LinkedList <> ();
+		for (int move : node.path)
+		{
+			CubeTable.steps (move, steps);
+		}
+		return steps;
+	}
+	
+	/**
+	 * Send given node to the worker owning its state.
+	 * 
+	 * @param node
+	 *        generated node.
+	 */
+	void send (Node node)
+	{
+		int hash = node.key.hashCode () * 0x85EBCA6B;
+		pending.incrementAndGet ();
+		workers[(hash >>> 16) % workers.length].inbox.offer (node);
+	}
+	
+	/**
+	 * Evaluate if given node cannot lead to better end state than the best one found.
+	 * 
+	 * @param node
+	 *        node to evaluate.
+	 * @return {@code true} if the node should be discarded, otherwise {@code false}.
+	 */
+	boolean prune (Node node)
+	{
+		Node best = solution.get ();
+		return best != null && node.priority >= best.priority;
+	}
+	
+	/**
+	 * Record given end state, unless better one is already found.
+	 * 
+	 * @param node
+	 *        node of end state.
+	 */
+	void found (Node node)
+	{
+		for (Node best = solution.get (); best == null || node.priority < best.priority; best = solution.get ())
+		{
+			if (solution.compareAndSet (best, node))
+			{
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Worker owning states of single hash partition.
+	 */
+	class Worker implements Runnable
+	{
+		/** Nodes sent to this worker by any worker. */
+		final ConcurrentLinkedQueue <Node> inbox = new ConcurrentLinkedQueue <> ();
+		/** Open list of slots of owned nodes. */
+		final BucketQueue queue = new BucketQueue ();
+		/** Nodes of the open list by slot. */
+		Node[] slots = new Node[16];
+		/** Released slots. */
+		int[] free = new int[16];
+		/** Number of released slots, and number of slots ever used. */
+		int released, used;
+		/** Best path cost of owned states. */
+		final TranspositionTable <CubeState> table;
+		
+		/**
+		 * Create worker.
+		 * 
+		 * @param capacity
+		 *        maximum number of states remembered by this worker.
+		 */
+		Worker (int capacity)
+		{
+			this.table = new TranspositionTable <> (capacity);
+		}
+		
+		@Override
+		public void run ()
+		{
+			while (!Thread.currentThread ().isInterrupted ())
+			{
+				// take received nodes into the open list.
+				for (Node node = inbox.poll (); node != null; node = inbox.poll ())
+				{
+					if (!prune (node) && table.put (node.key, node.path.length))
+					{
+						queue.add (store (node), BucketQueue.key (node.priority), BucketQueue.key (node.estimate));
+					}
+					else
+					{
+						pending.decrementAndGet ();
+					}
+				}
+				Node item = queue.isEmpty () ? null : take (queue.remove ());
+				if (item == null)
+				{ // idle until next node arrives, or all workers are idle with nothing in flight.
+					if (pending.get () == 0)
+					{
+						return;
+					}
+					LockSupport.parkNanos (1000);
+					continue;
+				}
+				int cost = item.path.length;
+				// skip duplicate reached by better or equal path.
+				if (!prune (item) && table.close (item.key, cost))
+				{
+					if (test (item.state))
+					{
+						found (item);
+					}
+					else
+					{
+						expand (item);
+					}
+				}
+				pending.decrementAndGet ();
+			}
+		}
+		
+		/**
+		 * Store given node in a slot.
+		 * 
+		 * @param node
+		 *        node to store.
+		 * @return slot of the node.
+		 */
+		int store (Node node)
+		{
+			int slot = released > 0 ? free[--released] : used++;
+			if (slot == slots.length)
+			{
+				slots = Arrays.copyOf (slots, slot * 2);
+			}
+			slots[slot] = node;
+			return slot;
+		}
+		
+		/**
+		 * Take node out of given slot, and release the slot.
+		 * 
+		 * @param slot
+		 *        slot of the node.
+		 * @return stored node.
+		 */
+		Node take (int slot)
+		{
+			Node node = slots[slot];
+			slots[slot] = null;
+			if (released == free.length)
+			{
+				free = Arrays.copyOf (free, released * 2);
+			}
+			free[released++] = slot;
+			return node;
+		}
+		
+		/**
+		 * Send node of each allowed next move.
+		 * 
+		 * @param item
+		 *        expanded node.
+		 */
+		void expand (Node item)
+		{
+			int cost = item.path.length;
+			for (int move = 0; move < CubeTable.QUARTER_SIZE; move++)
+			{
+				if (DistributedSolution.this.test (move, item.path, cost))
+				{
+					CubeState next = item.state.apply (move);
+					int[] path = Arrays.copyOf (item.path, cost + 1);
+					path[cost] = move;
+					send (new Node (next, path, applyAsDouble (next)));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+
+
+/**
+ * Pattern database over positions and orientations of a subset of edges, ignoring all other pieces.
+ * Index is {@code rank (locations) * 2 ^ SUBSET + flips}, where locations are ordered selection of positions
+ * holding each tracked edge. Each subset of 6 edges covers 42,577,920 entries in about 21 MB.
+ * 
+ * @author hasol
+ */
+public class EdgeDatabase extends PatternDatabase
+{
+	/** Number of tracked edges. */
+	final static int SUBSET = 6;
+	/** Number of disjoint subsets covering all edges. */
+	final static int PARTS = 2;
+	/** Number of orientations of tracked edges. */
+	final static int FLIP_SIZE = 1 << SUBSET;
+	
+	/** Shared instances of each subset. */
+	private static EdgeDatabase[] instances = new EdgeDatabase[PARTS];
+	
+	/** First tracked edge. */
+	final int first;
+	/** Position receiving piece from each position after each move, at {@code move * count + position}. */
+	private byte[] target;
+	
+	/**
+	 * Create database of given subset.
+	 * 
+	 * @param part
+	 *        index of subset. Subset {@code i} tracks edges from {@code i * SUBSET}.
+	 */
+	public EdgeDatabase (int part)
+	{
+		super ("edge" + part + ".pdb", CubePiece.permutations (CubePiece.EDGE.count, SUBSET) * FLIP_SIZE);
+		this.first = part * SUBSET;
+	}
+	
+	/**
+	 * Gets shared instance of given subset, loading it if necessary.
+	 * 
+	 * @param part
+	 *        index of subset.
+	 * @return loaded edge database.
+	 */
+	public static synchronized EdgeDatabase getInstance (int part)
+	{
+		if (instances[part] == null)
+		{
+			instances[part] = new EdgeDatabase (part);
+			instances[part].load ();
+		}
+		return instances[part];
+	}
+	
+	@Override
+	public long index (CubeState state)
+	{
+		CubePiece edge = CubePiece.EDGE;
+		// locations packed by 4 bits in order of tracked edge.
+		long locations = 0;
+		int flips = 0;
+		for (int p = 0; p < edge.count; p++)
+		{
+			int value = edge.piece (state, p) - first;
+			if (value >= 0 && value < SUBSET)
+			{
+				locations |= (long) p << (value << 2);
+				flips |= edge.orientation (state, p) << value;
+			}
+		}
+		long rank = 0;
+		int used = 0;
+		for (int i = 0; i < SUBSET; i++)
+		{
+			int value = (int) (locations >>> (i << 2)) & 0xF;
+			rank = rank * (edge.count - i) + value - Integer.bitCount (used & ((1 << value) - 1));
+			used |= 1 << value;
+		}
+		return rank * FLIP_SIZE + flips;
+	}
+	
+	@Override
+	protected int expand (long index, long[] next)
+	{
+		CubePiece edge = CubePiece.EDGE;
+		int[] locations = new int[SUBSET], moved = new int[SUBSET];
+		CubePiece.unrank (index / FLIP_SIZE, locations, edge.count, SUBSET);
+		int flips = (int) (index % FLIP_SIZE);
+		for (int move = 0; move < CubeTable.QUARTER_SIZE; move++)
+		{
+			int offset = move * edge.count, flipped = flips;
+			for (int i = 0; i < SUBSET; i++)
+			{
+				moved[i] = target[offset + locations[i]];
+				flipped ^= edge.twist[move][moved[i]] << i;
+			}
+			next[move] = CubePiece.rank (moved, edge.count, SUBSET) * FLIP_SIZE + flipped;
+		}
+		return CubeTable.QUARTER_SIZE;
+	}
+	
+	@Override
+	protected byte[] generate ()
+	{
+		CubePiece edge = CubePiece.EDGE;
+		target = new byte[CubeTable.QUARTER_SIZE * edge.count];
+		for (int move = 0; move < CubeTable.QUARTER_SIZE; move++)
+		{
+			for (int p = 0; p < edge.count; p++)
+			{
+				target[move * edge.count + edge.source[move][p]] = (byte) p;
+			}
+		}
+		byte[] data = super.generate ();
+		target = null;
+		return data;
+	}
+}
@@ -0,0 +1,398 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+
+/**
+ * Endgame database of every state within {@link #depth} quarter turns of solved state,
+ * with its exact distance and optimal next move.
+ * <p>
+ * Entries are pairs of {@link CubeState#high()} and {@link CubeState#low()} shifted left by {@link #INFO_BITS},
+ * whose low bits are distance and next move. They are sorted by packed state, so that a state is found by binary
+ * search. The database is generated by breadth first search from solved state, saved to a file in
+ * {@link PatternDatabase#directory}, and memory-mapped on later runs.
+ * <p>
+ * Searches finish as soon as they reach a state of the database, instead of searching the last moves,
+ * and any state not in the database is farther than {@link #depth} moves, which raises admissible estimates.
+ * 
+ * @author hasol
+ */
+public class EndgameDatabase
+{
+	/** File header values. */
+	final static int MAGIC = 0x52434547, VERSION = 1;
+	/** Size of file header in bytes. */
+	final static int HEADER = 24;
+	/** Number of bits of distance and next move below low half of packed state. */
+	final static int INFO_BITS = 8;
+	/** Next move of solved state. */
+	final static int NONE = 0xF;
+	/** Maximum depth, limited by distance bits. */
+	public final static int MAX_DEPTH = 14;
+	
+	/** Shared instances of each depth. */
+	private static EndgameDatabase[] instances = new EndgameDatabase[MAX_DEPTH + 1];
+	
+	/** Maximum distance of entries. */
+	final int depth;
+	/** Name of database file. */
+	final String name;
+	/** Sorted entries, two longs each, or {@code null} until loaded. */
+	private LongBuffer table;
+	/** Number of entries. */
+	private int size;
+	
+	/**
+	 * Create database of given depth, not loaded yet.
+	 * 
+	 * @param depth
+	 *        maximum distance of entries.
+	 */
+	EndgameDatabase (int depth)
+	{
+		if (depth < 0 || depth > MAX_DEPTH)
+		{
+			throw new IllegalArgumentException ("Invalid depth " + depth);
+		}
+		this.depth = depth;
+		this.name = "endgame-" + depth + ".db";
+	}
+	
+	/**
+	 * Gets shared instance of given depth, loading it if necessary.
+	 * 
+	 * @param depth
+	 *        maximum distance of entries.
+	 * @return loaded database.
+	 */
+	public static synchronized EndgameDatabase getInstance (int depth)
+	{
+		if (depth < 0 || depth > MAX_DEPTH)
+		{
+			throw new IllegalArgumentException ("Invalid depth " + depth);
+		}
+		if (instances[depth] == null)
+		{
+			instances[depth] = new EndgameDatabase (depth);
+			instances[depth].load ();
+		}
+		return instances[depth];
+	}
+	
+	/**
+	 * Load this database from its file, generating and saving it first if necessary.
+	 * If the file cannot be written, generated entries are kept in memory.
+	 * 
+	 * @return this database.
+	 */
+	public synchronized EndgameDatabase load ()
+	{
+		if (table == null)
+		{
+			File file = new File (PatternDatabase.directory, name);
+			long[] data = null;
+			try
+			{
+				if (!valid (file))
+				{
+					data = generate ();
+					save (data, file);
+				}
+				table = map (file);
+			}
+			catch (IOException e)
+			{
+				System.err.println (e);
+				table = LongBuffer.wrap (data != null ? data : generate ());
+			}
+			size = table.capacity () / 2;
+		}
+		return this;
+	}
+	
+	/**
+	 * Check header of given file.
+	 * 
+	 * @param file
+	 *        database file.
+	 * @return {@code true} if the file exists and matches this database, otherwise {@code false}.
+	 * @throws IOException
+	 *         if file cannot be read.
+	 */
+	private boolean valid (File file) throws IOException
+	{
+		if (!file.isFile () || file.length () < HEADER)
+		{
+			return false;
+		}
+		try (FileChannel channel = FileChannel.open (file.toPath (), StandardOpenOption.READ))
+		{
+			ByteBuffer header = ByteBuffer.allocate (HEADER);
+			while (header.hasRemaining () && channel.read (header) >= 0)
+			{
+				continue;
+			}
+			header.flip ();
+			return header.getInt () == MAGIC && header.getInt () == VERSION && header.getInt () == depth
+				&& header.getInt () == INFO_BITS && file.length () == HEADER + header.getLong () * 2 * Long.BYTES;
+		}
+	}
+	
+	/**
+	 * Write given entries to file, replacing it atomically.
+	 * 
+	 * @param data
+	 *        sorted entries.
+	 * @param file
+	 *        database file.
+	 * @throws IOException
+	 *         if file cannot be written.
+	 */
+	private void save (long[] data, File file) throws IOException
+	{
+		Path temp = new File (file.getPath () + ".tmp").toPath ();
+		try (FileChannel channel = FileChannel.open (temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+			StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			ByteBuffer header = ByteBuffer.allocate (HEADER);
+			header.putInt (MAGIC).putInt (VERSION).putInt (depth).putInt (INFO_BITS).putLong (data.length / 2).flip ();
+			ByteBuffer body = ByteBuffer.allocate (data.length * Long.BYTES);
+			body.asLongBuffer ().put (data);
+			while (header.hasRemaining () || body.hasRemaining ())
+			{
+				channel.write (new ByteBuffer[] {header, body});
+			}
+			channel.force (true);
+		}
+		Files.move (temp, file.toPath (), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/**
+	 * Memory-map entries of given file.
+	 * 
+	 * @param file
+	 *        database file.
+	 * @return read-only buffer of entries.
+	 * @throws IOException
+	 *         if file cannot be mapped.
+	 */
+	private static LongBuffer map (File file) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open (file.toPath (), StandardOpenOption.READ))
+		{
+			return channel.map (FileChannel.MapMode.READ_ONLY, HEADER, channel.size () - HEADER).asLongBuffer ();
+		}
+	}
+	
+	/**
+	 * Generate entries by breadth first search of quarter turns from solved state.
+	 * Each layer is sorted, and children found in the previous two layers or twice in the next layer are dropped.
+	 * 
+	 * @return sorted entries, high half and shifted low half of each.
+	 */
+	long[] generate ()
+	{
+		List <long[]> highs = new ArrayList <> (), lows = new ArrayList <> ();
+		CubeState solved = new CubeState ();
+		highs.add (new long[] {solved.high ()});
+		lows.add (new long[] {solved.low () << INFO_BITS | NONE});
+		long total = 1;
+		for (int d = 0; d < depth; d++)
+		{
+			long[] layerHighs = highs.get (d), layerLows = lows.get (d);
+			long[] nextHighs = new long[layerHighs.length * CubeTable.QUARTER_SIZE];
+			long[] nextLows = new long[nextHighs.length];
+			int count = 0;
+			for (int i = 0; i < layerHighs.length; i++)
+			{
+				CubeState state = new CubeState (layerHighs[i], layerLows[i] >>> INFO_BITS);
+				for (int move = 0; move < CubeTable.QUARTER_SIZE; move++)
+				{
+					CubeState next = state.apply (move);
+					long high = next.high (), low = next.low ();
+					if (find (layerHighs, layerLows, high, low) < 0
+						&& (d == 0 || find (highs.get (d - 1), lows.get (d - 1), high, low) < 0))
+					{
+						nextHighs[count] = high;
+						nextLows[count++] = low << INFO_BITS | (d + 1) << 4 | CubeTable.inverse (move);
+					}
+				}
+			}
+			DiskSearch.sort (nextHighs, nextLows, 0, count);
+			int unique = 0;
+			for (int i = 0; i < count; i++)
+			{
+				if (unique == 0 || nextHighs[i] != nextHighs[unique - 1]
+					|| nextLows[i] >>> INFO_BITS != nextLows[unique - 1] >>> INFO_BITS)
+				{
+					nextHighs[unique] = nextHighs[i];
+					nextLows[unique++] = nextLows[i];
+				}
+			}
+			highs.add (Arrays.copyOf (nextHighs, unique));
+			lows.add (Arrays.copyOf (nextLows, unique));
+			total += unique;
+		}
+		if (total * 2 > Integer.MAX_VALUE - 8)
+		{
+			throw new IllegalStateException ("Endgame database too large at depth " + depth);
+		}
+		long[] allHighs = new long[(int) total], allLows = new long[(int) total];
+		int offset = 0;
+		for (int d = 0; d <= depth; d++)
+		{
+			System.arraycopy (highs.get (d), 0, allHighs, offset, highs.get (d).length);
+			System.arraycopy (lows.get (d), 0, allLows, offset, lows.get (d).length);
+			offset += highs.get (d).length;
+		}
+		DiskSearch.sort (allHighs, allLows, 0, allHighs.length);
+		long[] data = new long[allHighs.length * 2];
+		for (int i = 0; i < allHighs.length; i++)
+		{
+			data[2 * i] = allHighs[i];
+			data[2 * i + 1] = allLows[i];
+		}
+		return data;
+	}
+	
+	/**
+	 * Find state in sorted layer.
+	 * 
+	 * @return index of entry, or negative if not found.
+	 */
+	private static int find (long[] highs, long[] lows, long high, long low)
+	{
+		int from = 0, to = highs.length - 1;
+		while (from <= to)
+		{
+			int middle = (from + to) >>> 1;
+			int result = DiskSearch.compare (highs[middle], lows[middle] >>> INFO_BITS, high, low);
+			if (result == 0)
+			{
+				return middle;
+			}
+			else if (result < 0)
+			{
+				from = middle + 1;
+			}
+			else
+			{
+				to = middle - 1;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Find entry of packed state.
+	 * 
+	 * @param high
+	 *        high half of packed state.
+	 * @param low
+	 *        low half of packed state.
+	 * @return distance and next move of the entry, or {@code -1} if not found.
+	 */
+	int find (long high, long low)
+	{
+		int from = 0, to = size - 1;
+		while (from <= to)
+		{
+			int middle = (from + to) >>> 1;
+			long entry = table.get (2 * middle + 1);
+			int result = DiskSearch.compare (table.get (2 * middle), entry >>> INFO_BITS, high, low);
+			if (result == 0)
+			{
+				return (int) entry & (1 << INFO_BITS) - 1;
+			}
+			else if (result < 0)
+			{
+				from = middle + 1;
+			}
+			else
+			{
+				to = middle - 1;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Gets exact distance of given state.
+	 * 
+	 * @param state
+	 *        state to query.
+	 * @return number of quarter turns to solved state, or {@code -1} if farther than {@link #depth}.
+	 */
+	public int distance (CubeState state)
+	{
+		int info = find (state.high (), state.low ());
+		return info < 0 ? -1 : info >>> 4;
+	}
+	
+	/**
+	 * Gets optimal next move of given state.
+	 * 
+	 * @param state
+	 *        state to query.
+	 * @return move code reducing the distance by one, or {@code -1} if solved or not in this database.
+	 */
+	public int next (CubeState state)
+	{
+		int info = find (state.high (), state.low ());
+		return info < 0 || (info & NONE) == NONE ? -1 : info & NONE;
+	}
+	
+	/**
+	 * Gets optimal steps of given state, by following next moves to solved state.
+	 * 
+	 * @param state
+	 *        state to query.
+	 * @return list of steps, or {@code null} if not in this database.
+	 */
+	public List <CubeDuo> steps (CubeState state)
+	{
+		if (distance (state) < 0)
+		{
+			return null;
+		}
+		LinkedList <CubeDuo> list = new LinkedList <> ();
+		CubeState current = new CubeState (state);
+		for (int move = next (current); move >= 0; move = next (current))
+		{
+			CubeTable.steps (move, list);
+			current.turn (move);
+		}
+		return list;
+	}
+	
+	/**
+	 * Gets maximum distance of entries.
+	 * 
+	 * @return depth of this database.
+	 */
+	public int depth ()
+	{
+		return depth;
+	}
+	
+	/**
+	 * Gets number of entries.
+	 * 
+	 * @return number of states within {@link #depth} moves.
+	 */
+	public int size ()
+	{
+		return size;
+	}
+	
+	@Override
+	public String toString ()
+	{
+		return name + Tuple.OPEN + depth + Tuple.COMMA + size + Tuple.CLOSE;
+	}
+}
@@ -0,0 +1,276 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+import java.util.*;
+
+
+/**
+ * Finite automaton accepting move sequences without redundant subsequence, shared by all solutions.
+ * A sequence is redundant if another sequence of the same moves, which is shorter or equally long and
+ * lexicographically smaller by order of the moves, reaches the same state.
+ * Every redundant sequence up to {@link #length} moves is found by breadth first search from solved state,
+ * and the automaton rejects any sequence containing one of them, in the manner of Aho-Corasick.
+ * Any state is still reached by its shortest and lexicographically smallest sequence,
+ * so search restricted to accepted sequences remains complete.
+ * <p>
+ * It covers same face repeats, reverse pairs and order of commuting opposite faces, in constant time per move.
+ * 
+ * @author hasol
+ */
+public final class MoveAutomaton
+{
+	/** State before any move. */
+	public final static int START = 0;
+	/** Transition of rejected move. */
+	public final static int DEAD = -1;
+	
+	/** Maximum length of redundant sequences to search. */
+	static int length = 4;
+	/** Automata by their moves. */
+	private final static Map <String, MoveAutomaton> CACHE = new HashMap <> ();
+	
+	/** Move codes of this automaton, in lexicographical order. */
+	final int[] moves;
+	/** Index of each move code in {@link #moves}, or -1. */
+	private final int[] letters;
+	/** Next state of each state and letter, at {@code state * moves.length + letter}. */
+	private final int[] table;
+	/** Maximum number of last moves which determine the state. */
+	private final int depth;
+	/** Number of states. */
+	private final int size;
+	
+	/**
+	 * Gets automaton of given moves, building it on first use.
+	 * 
+	 * @param moves
+	 *        move codes, in lexicographical order.
+	 * @return shared automaton.
+	 */
+	public static synchronized MoveAutomaton of (int... moves)
+	{
+		return CACHE.computeIfAbsent (Arrays.toString (moves), key -> new MoveAutomaton (moves.clone ()));
+	}
+	
+	/**
+	 * Build automaton of given moves.
+	 * 
+	 * @param moves
+	 *        move codes, in lexicographical order.
+	 */
+	private MoveAutomaton (int[] moves)
+	{
+		this.moves = moves;
+		this.letters = new int[CubeTable.MOVE_SIZE];
+		Arrays.fill (letters, -1);
+		for (int i = 0; i < moves.length; i++)
+		{
+			letters[moves[i]] = i;
+		}
+		// trie of redundant sequences, with terminal flag.
+		ArrayList <int[]> children = new ArrayList <> ();
+		ArrayList <Boolean> terminal = new ArrayList <> ();
+		children.add (new int[moves.length]);
+		terminal.add (false);
+		for (int[] pattern : patterns ())
+		{
+			int node = 0;
+			for (int letter : pattern)
+			{
+				if (children.get (node)[letter] == 0)
+				{
+					children.get (node)[letter] = children.size ();
+					children.add (new int[moves.length]);
+					terminal.add (false);
+				}
+				node = children.get (node)[letter];
+			}
+			terminal.set (node, true);
+		}
+		// complete transitions by failure links, in breadth first order.
+		int count = children.size ();
+		int[] fail = new int[count], goTo = new int[count * moves.length];
+		int[] order = new int[count], level = new int[count];
+		boolean[] dead = new boolean[count];
+		int head = 0, tail = 0;
+		order[tail++] = 0;
+		while (head < tail)
+		{
+			int node = order[head++];
+			dead[node] = terminal.get (node) || dead[fail[node]];
+			for (int letter = 0; letter < moves.length; letter++)
+			{
+				int child = children.get (node)[letter];
+				if (child != 0)
+				{
+					fail[child] = node == 0 ? 0 : goTo[fail[node] * moves.length + letter];
+					level[child] = level[node] + 1;
+					goTo[node * moves.length + letter] = child;
+					order[tail++] = child;
+				}
+				else
+				{
+					goTo[node * moves.length + letter] = node == 0 ? 0 : goTo[fail[node] * moves.length + letter];
+				}
+			}
+		}
+		// renumber live nodes, in breadth first order so that the root stays at START.
+		int[] number = new int[count];
+		int live = 0, deepest = 0;
+		for (int i = 0; i < count; i++)
+		{
+			int node = order[i];
+			number[node] = dead[node] ? DEAD : live++;
+			if (!dead[node])
+			{
+				deepest = Math.max (deepest, level[node]);
+			}
+		}
+		this.table = new int[live * moves.length];
+		for (int node = 0; node < count; node++)
+		{
+			if (!dead[node])
+			{
+				for (int letter = 0; letter < moves.length; letter++)
+				{
+					table[number[node] * moves.length + letter] = number[goTo[node * moves.length + letter]];
+				}
+			}
+		}
+		this.depth = deepest;
+		this.size = live;
+	}
+	
+	/**
+	 * Find minimal redundant sequences by breadth first search, whose proper prefix and suffix are not redundant.
+	 * 
+	 * @return redundant sequences of letters.
+	 */
+	private ArrayList <int[]> patterns ()
+	{
+		ArrayList <int[]> patterns = new ArrayList <> ();
+		HashMap <CubeState, int[]> first = new HashMap <> ();
+		ArrayList <int[]> frontier = new ArrayList <> ();
+		first.put (new CubeState (), new int[0]);
+		frontier.add (new int[0]);
+		for (int k = 1; k <= length; k++)
+		{
+			ArrayList <int[]> next = new ArrayList <> ();
+			for (int[] prefix : frontier)
+			{
+				for (int letter = 0; letter < moves.length; letter++)
+				{
+					int[] word = Arrays.copyOf (prefix, k);
+					word[k - 1] = letter;
+					CubeState state = apply (word, 0);
+					int[] known = first.putIfAbsent (state, word);
+					if (known == null)
+					{
+						next.add (word);
+					}
+					else if (Arrays.equals (first.get (apply (word, 1)), Arrays.copyOfRange (word, 1, k)))
+					{ // suffix is not redundant, so this is minimal.
+						patterns.add (word);
+					}
+				}
+			}
+			frontier = next;
+		}
+		return patterns;
+	}
+	
+	/**
+	 * Apply given sequence of letters to solved state.
+	 * 
+	 * @param word
+	 *        sequence of letters.
+	 * @param from
+	 *        index of first letter to apply.
+	 * @return resulting state.
+	 */
+	private CubeState apply (int[] word, int from)
+	{
+		CubeState state = new CubeState ();
+		for (int i = from; i < word.length; i++)
+		{
+			state.turn (moves[word[i]]);
+		}
+		return state;
+	}
+	
+	/**
+	 * Gets next state after given move.
+	 * 
+	 * @param state
+	 *        current state.
+	 * @param move
+	 *        move code, which must be one of moves of this automaton.
+	 * @return next state, or {@link #DEAD} if the sequence becomes redundant.
+	 */
+	public int next (int state, int move)
+	{
+		return table[state * moves.length + letters[move]];
+	}
+	
+	/**
+	 * Gets state after given sequence of moves, which depends only on its last {@link #depth()} moves.
+	 * 
+	 * @param steps
+	 *        move codes of sequence.
+	 * @param length
+	 *        number of moves in the sequence.
+	 * @return state, or {@link #DEAD} if the sequence is redundant.
+	 */
+	public int state (int[] steps, int length)
+	{
+		int state = START;
+		for (int i = Math.max (0, length - depth); i < length && state != DEAD; i++)
+		{
+			state = next (state, steps[i]);
+		}
+		return state;
+	}
+	
+	/**
+	 * Evaluate if next move is allowed after given sequence of moves.
+	 * 
+	 * @param move
+	 *        move code of next step.
+	 * @param steps
+	 *        move codes of previous steps.
+	 * @param length
+	 *        number of previous steps.
+	 * @return {@code true} if allowed, otherwise {@code false}.
+	 */
+	public boolean test (int move, int[] steps, int length)
+	{
+		int state = state (steps, length);
+		return state != DEAD && next (state, move) != DEAD;
+	}
+	
+	/**
+	 * Gets maximum number of last moves which determine the state.
+	 * 
+	 * @return number of moves.
+	 */
+	public int depth ()
+	{
+		return depth;
+	}
+	
+	/**
+	 * Gets number of states.
+	 * 
+	 * @return number of states.
+	 */
+	public int size ()
+	{
+		return size;
+	}
+	
+	@Override
+	public String toString ()
+	{
+		return Tuple.OPEN + moves.length + Tuple.COMMA + size + Tuple.COMMA + depth + Tuple.CLOSE;
+	}
+}
@@ -0,0 +1,231 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+import java.util.*;
+
+
+/**
+ * Open addressing hash table from packed states to small values.
+ * Each entry takes 17 bytes in parallel primitive arrays, instead of an object per state.
+ * Keys are pairs of {@link CubeState#high()} and {@link CubeState#low()}, and values are in range {@code [0, 255)}.
+ * 
+ * @author hasol
+ */
+public class PackedTable
+{
+	/** Maximum ratio of entries to slots, in percent. */
+	final static int LOAD = 75;
+	
+	/** High halves of keys. */
+	private long[] highs;
+	/** Low halves of keys. */
+	private long[] lows;
+	/** Values plus one, or zero for empty slot. */
+	private byte[] values;
+	/** Mask to select slot from hash. */
+	private int mask;
+	/** Number of entries. */
+	private int size;
+	/** Maximum number of entries. */
+	private final int limit;
+	
+	/**
+	 * Create table sized for given number of entries. The table grows when necessary.
+	 * 
+	 * @param capacity
+	 *        expected number of entries.
+	 */
+	public PackedTable (int capacity)
+	{
+		this (capacity, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Create table sized for given number of entries, which grows up to given number of entries.
+	 * 
+	 * @param capacity
+	 *        expected number of entries.
+	 * @param limit
+	 *        maximum number of entries.
+	 */
+	public PackedTable (int capacity, int limit)
+	{
+		this.limit = Math.max (limit, 1);
+		allocate (Integer.highestOneBit ((int) Math.min (Math.max ((long) capacity * 100 / LOAD, 8), 1 << 29)) * 2);
+	}
+	
+	/**
+	 * Allocate empty slots.
+	 * 
+	 * @param slots
+	 *        number of slots, power of two.
+	 */
+	private void allocate (int slots)
+	{
+		highs = new long[slots];
+		lows = new long[slots];
+		values = new byte[slots];
+		mask = slots - 1;
+		size = 0;
+	}
+	
+	/**
+	 * Find slot of given key, or empty slot where it belongs.
+	 * 
+	 * @param high
+	 *        high half of key.
+	 * @param low
+	 *        low half of key.
+	 * @return slot index.
+	 */
+	private int find (long high, long low)
+	{
+		long hash = high * 0x9E3779B97F4A7C15L ^ low * 0xC2B2AE3D27D4EB4FL;
+		int slot = (int) (hash ^ hash >>> 32) & mask;
+		while (values[slot] != 0 && (highs[slot] != high || lows[slot] != low))
+		{
+			slot = slot + 1 & mask;
+		}
+		return slot;
+	}
+	
+	/**
+	 * Gets value of given key.
+	 * 
+	 * @param high
+	 *        high half of key.
+	 * @param low
+	 *        low half of key.
+	 * @return value, or -1 if not stored.
+	 */
+	public int get (long high, long low)
+	{
+		return (values[find (high, low)] & 0xFF) - 1;
+	}
+	
+	/**
+	 * Store given key with given value, unless it is already stored.
+	 * 
+	 * @param high
+	 *        high half of key.
+	 * @param low
+	 *        low half of key.
+	 * @param value
+	 *        value in range {@code [0, 255)}.
+	 * @return {@code true} if stored, {@code false} if the key was already stored.
+	 * @throws IllegalStateException
+	 *         if the key is new and the table is full.
+	 */
+	public boolean put (long high, long low, int value)
+	{
+		int slot = find (high, low);
+		if (values[slot] != 0)
+		{
+			return false;
+		}
+		if (size >= limit)
+		{
+			throw new IllegalStateException ("Table is full");
+		}
+		highs[slot] = high;
+		lows[slot] = low;
+		values[slot] = (byte) (value + 1);
+		if (++size * 100L > (long) values.length * LOAD)
+		{
+			grow ();
+		}
+		return true;
+	}
+	
+	/**
+	 * Store given key with given value, replacing stored value.
+	 * 
+	 * @param high
+	 *        high half of key.
+	 * @param low
+	 *        low half of key.
+	 * @param value
+	 *        value in range {@code [0, 255)}.
+	 * @return previous value, or -1 if not stored.
+	 * @throws IllegalStateException
+	 *         if the key is new and the table is full.
+	 */
+	public int set (long high, long low, int value)
+	{
+		int slot = find (high, low);
+		if (values[slot] == 0)
+		{
+			put (high, low, value);
+			return -1;
+		}
+		int previous = (values[slot] & 0xFF) - 1;
+		values[slot] = (byte) (value + 1);
+		return previous;
+	}
+	
+	/**
+	 * Double number of slots, and reinsert all entries.
+	 */
+	private void grow ()
+	{
+		long[] oldHighs = highs, oldLows = lows;
+		byte[] oldValues = values;
+		allocate (values.length * 2);
+		for (int i = 0; i < oldValues.length; i++)
+		{
+			if (oldValues[i] != 0)
+			{
+				int slot = find (oldHighs[i], oldLows[i]);
+				highs[slot] = oldHighs[i];
+				lows[slot] = oldLows[i];
+				values[slot] = oldValues[i];
+				size++;
+			}
+		}
+	}
+	
+	/**
+	 * Remove all entries.
+	 */
+	public void clear ()
+	{
+		Arrays.fill (values, (byte) 0);
+		size = 0;
+	}
+	
+	/**
+	 * Gets number of entries.
+	 * 
+	 * @return number of entries.
+	 */
+	public int size ()
+	{
+		return size;
+	}
+	
+	/**
+	 * Evaluate if no more keys can be stored.
+	 * 
+	 * @return {@code true} if the number of entries reached the limit, otherwise {@code false}.
+	 */
+	public boolean isFull ()
+	{
+		return size >= limit;
+	}
+	
+	/**
+	 * Gets number of slots.
+	 * 
+	 * @return number of slots.
+	 */
+	public int capacity ()
+	{
+		return values.length;
+	}
+	
+	@Override
+	public String toString ()
+	{
+		return Tuple.OPEN + size + Tuple.COMMA + values.length + Tuple.CLOSE;
+	}
+}
@@ -0,0 +1,202 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+
+/**
+ * Parallel iterative deepening A* solution.
+ * Each iteration splits the search tree into subtrees of every allowed move sequence of length {@link #split},
+ * which are searched as tasks of {@link ForkJoinPool}, so idle workers steal remaining subtrees.
+ * The first solution found within the current bound is optimal, and it cancels all other subtrees.
+ * Instance of this class must not be shared between threads, but its subtrees run on the pool.
+ * Interrupting the thread calling {@link #apply(CubeState)} stops all subtrees.
+ * 
+ * @author hasol
+ */
+public class ParallelSolution extends PatternSolution
+{
+	/** Pool to run subtrees. */
+	static ForkJoinPool pool = ForkJoinPool.commonPool ();
+	/** Depth at which the tree is split into tasks. */
+	static int split = 2;
+	
+	/** Move codes of solution found in current iteration, or {@code null}. */
+	final AtomicReference <int[]> solution = new AtomicReference <> ();
+	/** Thread calling current search, whose interrupt stops subtrees running on the pool. */
+	volatile Thread caller;
+	
+	/**
+	 * Create solution using corner database and disjoint edge databases.
+	 */
+	public ParallelSolution ()
+	{
+		super ();
+	}
+	
+	/**
+	 * Create solution using given heuristic.
+	 * 
+	 * @param heuristic
+	 *        admissible estimate of number of quarter turns. It must be safe to call from multiple threads.
+	 */
+	public ParallelSolution (ToIntFunction <CubeState> heuristic)
+	{
+		super (heuristic);
+	}
+	
+	@Override
+	public List <CubeDuo> apply (CubeState map)
+	{
+		CubeState root = new CubeState (map);
+		int bound = Math.max (minimum, (int) Math.ceil (applyAsDouble (root)));
+		caller = Thread.currentThread ();
+		while (bound <= maximum && !caller.isInterrupted ())
+		{
+			threshold = bound;
+			solution.set (null);
+			int next = pool.invoke (new Branch (root, new int[maximum], 0, bound));
+			if (next == FOUND)
+			{
+				LinkedList <CubeDuo> list = new LinkedList <> ();
+				for (int move : solution.get ())
+				{
+					CubeTable.steps (move, list);
+				}
+				return list;
+			}
+			bound = next;
+		}
+		return null;
+	}
+	
+	/**
+	 * Task searching subtree below given path. Above {@link #split}, it forks a task for each next move.
+	 */
+	class Branch extends RecursiveTask <Integer>
+	{
+		private final static long serialVersionUID = 1L;
+		
+		/** State at the end of the path. */
+		final CubeState state;
+		/** Move codes of the path. */
+		final int[] stack;
+		/** Length of the path. */
+		final int depth;
+		/** Maximum estimated path cost to search. */
+		final int bound;
+		
+		/**
+		 * Create task.
+		 * 
+		 * @param state
+		 *        state at the end of the path, owned by this task.
+		 * @param stack
+		 *        move codes of the path, owned by this task.
+		 * @param depth
+		 *        length of the path.
+		 * @param bound
+		 *        maximum estimated path cost to search.
+		 */
+		Branch (CubeState state, int[] stack, int depth, int bound)
+		{
+			this.state = state;
+			this.stack = stack;
+			this.depth = depth;
+			this.bound = bound;
+		}
+		
+		@Override
+		protected Integer compute ()
+		{
+			if (caller.isInterrupted ())
+			{
+				return Integer.MAX_VALUE;
+			}
+			else if (depth >= split)
+			{
+				Worker worker = new Worker (state, stack);
+				int result = worker.search (depth, bound);
+				if (result == FOUND)
+				{
+					solution.compareAndSet (null, Arrays.copyOf (worker.stack, worker.length));
+				}
+				return result;
+			}
+			int cost = depth + (int) Math.ceil (applyAsDouble (state));
+			if (cost > bound)
+			{
+				return cost;
+			}
+			else if (test (state))
+			{
+				solution.compareAndSet (null, Arrays.copyOf (stack, depth));
+				return FOUND;
+			}
+			ArrayList <Branch> branches = new ArrayList <> ();
+			for (int move : moves)
+			{
+				if (ParallelSolution.this.test (move, stack, depth))
+				{
+					int[] next = stack.clone ();
+					next[depth] = move;
+					branches.add (new Branch (state.apply (move), next, depth + 1, bound));
+				}
+			}
+			int least = Integer.MAX_VALUE;
+			for (Branch branch : invokeAll (branches))
+			{
+				least = Math.min (least, branch.join ());
+			}
+			return solution.get () != null ? FOUND : least;
+		}
+	}
+	
+	/**
+	 * Sequential search of single subtree, which stops once any subtree has found solution.
+	 */
+	class Worker extends AlternateSolution
+	{
+		/**
+		 * Create worker starting from given path.
+		 * 
+		 * @param state
+		 *        state at the end of the path, owned by this worker.
+		 * @param stack
+		 *        move codes of the path.
+		 */
+		Worker (CubeState state, int[] stack)
+		{
+			super (ParallelSolution.this.moves);
+			this.state = state;
+			this.stack = stack.clone ();
+		}
+		
+		@Override
+		int search (int depth, int bound)
+		{
+			return solution.get () != null ? Integer.MAX_VALUE : super.search (depth, bound);
+		}
+		
+		@Override
+		boolean interrupted ()
+		{ // workers run on the pool, so check the thread which started the search.
+			return caller.isInterrupted ();
+		}
+		
+		@Override
+		public double applyAsDouble (CubeState state)
+		{
+			return ParallelSolution.this.applyAsDouble (state);
+		}
+		
+		@Override
+		public boolean test (CubeState state)
+		{
+			return ParallelSolution.this.test (state);
+		}
+	}
+}
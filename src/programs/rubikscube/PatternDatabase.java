@@ -0,0 +1,410 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+
+/**
+ * Table of exact distances from solved state for an abstraction of the cube, used as admissible heuristic.
+ * Distances are stored as 4-bit values. The table is generated once by breadth first search over moves given by
+ * {@link #expand(long, long[])}, saved to a file next to the application, and memory-mapped on later runs.
+ * <p>
+ * File format is a header of {@link #MAGIC}, {@link #VERSION}, number of entries, followed by packed distances.
+ * 
+ * @author hasol
+ */
+public abstract class PatternDatabase implements ToIntFunction <CubeState>
+{
+	/** File header values. */
+	final static int MAGIC = 0x52435044, VERSION = 1;
+	/** Size of file header in bytes. */
+	final static int HEADER = 16;
+	/** Distance value of entries not reached yet. */
+	final static int UNKNOWN = 0xF;
+	
+	/** Directory to store database files. */
+	static File directory = directory ();
+	/** Directory of external memory search during generation, or {@code null} to search in memory. */
+	static File external;
+	
+	/** File name of this database. */
+	final String name;
+	/** Number of entries. */
+	final long size;
+	/** Packed distances, two entries per byte. */
+	private ByteBuffer table;
+	
+	/**
+	 * Create database of given size. Entries are not available until {@link #load()} is called.
+	 * 
+	 * @param name
+	 *        file name of this database.
+	 * @param size
+	 *        number of entries.
+	 */
+	protected PatternDatabase (String name, long size)
+	{
+		this.name = name;
+		this.size = size;
+	}
+	
+	/**
+	 * Find directory containing this application.
+	 * 
+	 * @return directory of class files or jar file, or working directory if unknown.
+	 */
+	private static File directory ()
+	{
+		try
+		{
+			java.security.CodeSource source = PatternDatabase.class.getProtectionDomain ().getCodeSource ();
+			if (source != null)
+			{
+				File file = new File (source.getLocation ().toURI ());
+				return file.isDirectory () ? file : file.getParentFile ();
+			}
+		}
+		catch (java.net.URISyntaxException | SecurityException e)
+		{
+			System.err.println (e);
+		}
+		return new File (System.getProperty ("user.dir"));
+	}
+	
+	/**
+	 * Compute entry index of given state.
+	 * 
+	 * @param state
+	 *        state to query.
+	 * @return index in range {@code [0, size)}.
+	 */
+	public abstract long index (CubeState state);
+	
+	/**
+	 * Compute entry indices of states one move away from given entry.
+	 * 
+	 * @param index
+	 *        entry index.
+	 * @param next
+	 *        receives successor indices. Length is at least {@link CubeTable#MOVE_SIZE}.
+	 * @return number of successors.
+	 */
+	protected abstract int expand (long index, long[] next);
+	
+	/**
+	 * Compute entry indices of goal states.
+	 * 
+	 * @return goal indices.
+	 */
+	protected long[] goals ()
+	{
+		return new long[]
+		{
+			index (new CubeState ())
+		};
+	}
+	
+	/**
+	 * Load this database from its file, generating and saving it first if necessary.
+	 * If the file cannot be written, generated table is kept in memory.
+	 * 
+	 * @return this database.
+	 * @throws CancellationException
+	 *         if interrupted before table is available, keeping interrupt status.
+	 */
+	public synchronized PatternDatabase load ()
+	{
+		if (table == null)
+		{
+			File file = new File (directory, name);
+			byte[] data = null;
+			try
+			{
+				if (!valid (file))
+				{
+					data = generate ();
+					save (data, file);
+				}
+				table = map (file);
+			}
+			catch (IOException e)
+			{
+				System.err.println (e);
+				if (data == null && e instanceof ClosedByInterruptException)
+				{ // do not generate on interrupted thread.
+					throw new CancellationException ("Interrupted loading " + name);
+				}
+				table = ByteBuffer.wrap (data != null ? data : generate ());
+			}
+		}
+		return this;
+	}
+	
+	/**
+	 * Check header of given file.
+	 * 
+	 * @param file
+	 *        database file.
+	 * @return {@code true} if the file exists and matches this database, otherwise {@code false}.
+	 * @throws IOException
+	 *         if file cannot be read.
+	 */
+	private boolean valid (File file) throws IOException
+	{
+		if (!file.isFile () || file.length () != HEADER + (size + 1) / 2)
+		{
+			return false;
+		}
+		try (FileChannel channel = FileChannel.open (file.toPath (), StandardOpenOption.READ))
+		{
+			ByteBuffer header = ByteBuffer.allocate (HEADER);
+			while (header.hasRemaining () && channel.read (header) >= 0)
+			{
+				continue;
+			}
+			header.flip ();
+			return header.getInt () == MAGIC && header.getInt () == VERSION && header.getLong () == size;
+		}
+	}
+	
+	/**
+	 * Write given table to file, replacing it atomically.
+	 * 
+	 * @param data
+	 *        packed distances.
+	 * @param file
+	 *        database file.
+	 * @throws IOException
+	 *         if file cannot be written.
+	 */
+	private void save (byte[] data, File file) throws IOException
+	{
+		Path temp = new File (file.getPath () + ".tmp").toPath ();
+		try (FileChannel channel = FileChannel.open (temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+			StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			ByteBuffer header = ByteBuffer.allocate (HEADER);
+			header.putInt (MAGIC).putInt (VERSION).putLong (size).flip ();
+			ByteBuffer body = ByteBuffer.wrap (data);
+			while (header.hasRemaining () || body.hasRemaining ())
+			{
+				channel.write (new ByteBuffer[] {header, body});
+			}
+			channel.force (true);
+		}
+		Files.move (temp, file.toPath (), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/**
+	 * Memory-map packed distances of given file.
+	 * 
+	 * @param file
+	 *        database file.
+	 * @return read-only buffer of packed distances.
+	 * @throws IOException
+	 *         if file cannot be mapped.
+	 */
+	private ByteBuffer map (File file) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open (file.toPath (), StandardOpenOption.READ))
+		{
+			return channel.map (FileChannel.MapMode.READ_ONLY, HEADER, (size + 1) / 2);
+		}
+	}
+	
+	/**
+	 * Generate packed distances by breadth first search from goal states.
+	 * Entries are expanded in place, one depth at a time.
+	 * 
+	 * @return packed distances.
+	 * @throws CancellationException
+	 *         if interrupted, keeping interrupt status.
+	 */
+	protected byte[] generate ()
+	{
+		byte[] data = new byte[(int) ((size + 1) / 2)];
+		Arrays.fill (data, (byte) (UNKNOWN << 4 | UNKNOWN));
+		if (external != null)
+		{
+			try
+			{
+				return generate (data, new File (external, name));
+			}
+			catch (InterruptedIOException | ClosedByInterruptException e)
+			{ // layers are kept, so that next run resumes.
+				throw new CancellationException ("Interrupted generating " + name);
+			}
+			catch (IOException e)
+			{
+				System.err.println (e);
+			}
+		}
+		long[] next = new long[CubeTable.MOVE_SIZE];
+		long count = 0;
+		for (long goal : goals ())
+		{
+			if (get (data, goal) == UNKNOWN)
+			{
+				set (data, goal, 0);
+				count++;
+			}
+		}
+		for (int depth = 0; count < size && depth < UNKNOWN - 1; depth++)
+		{
+			if (Thread.currentThread ().isInterrupted ())
+			{
+				throw new CancellationException ("Interrupted generating " + name);
+			}
+			long found = 0;
+			for (long index = 0; index < size; index++)
+			{
+				if (get (data, index) == depth)
+				{
+					for (int i = 0, n = expand (index, next); i < n; i++)
+					{
+						if (get (data, next[i]) == UNKNOWN)
+						{
+							set (data, next[i], depth + 1);
+							found++;
+						}
+					}
+				}
+			}
+			if (found == 0)
+			{
+				break;
+			}
+			count += found;
+		}
+		return data;
+	}
+	
+	/**
+	 * Generate packed distances by external memory search from goal states, whose layers are kept in given
+	 * directory, so that interrupted generation resumes from the last completed layer.
+	 * Entry index is stored as low half of packed state.
+	 * 
+	 * @param data
+	 *        receives packed distances.
+	 * @param folder
+	 *        directory of layer files.
+	 * @return packed distances.
+	 * @throws IOException
+	 *         if files cannot be read or written.
+	 * @see DiskSearch
+	 */
+	private byte[] generate (byte[] data, File folder) throws IOException
+	{
+		long[] goals = goals ();
+		DiskSearch search = new DiskSearch (folder, name + Tuple.COMMA + size, CubeTable.MOVE_SIZE, false,
+			(high, low, highs, lows) ->
+			{
+				int n = expand (low, lows);
+				Arrays.fill (highs, 0, n, 0);
+				return n;
+			});
+		int depth = search.run (UNKNOWN - 1, new long[goals.length], goals);
+		for (int i = 0; i <= depth; i++)
+		{
+			int value = i;
+			search.forEach (i, (high, low) -> set (data, low, value));
+		}
+		return data;
+	}
+	
+	/**
+	 * Read entry from packed distances.
+	 * 
+	 * @param data
+	 *        packed distances.
+	 * @param index
+	 *        entry index.
+	 * @return distance.
+	 */
+	private static int get (byte[] data, long index)
+	{
+		return data[(int) (index >>> 1)] >>> ((int) (index & 1) << 2) & UNKNOWN;
+	}
+	
+	/**
+	 * Write entry to packed distances.
+	 * 
+	 * @param data
+	 *        packed distances.
+	 * @param index
+	 *        entry index.
+	 * @param value
+	 *        distance.
+	 */
+	private static void set (byte[] data, long index, int value)
+	{
+		int i = (int) (index >>> 1), shift = (int) (index & 1) << 2;
+		data[i] = (byte) (data[i] & ~(UNKNOWN << shift) | value << shift);
+	}
+	
+	/**
+	 * Gets distance of given entry.
+	 * 
+	 * @param index
+	 *        entry index.
+	 * @return minimum number of moves to reach goal.
+	 */
+	public int get (long index)
+	{
+		return table.get ((int) (index >>> 1)) >>> ((int) (index & 1) << 2) & UNKNOWN;
+	}
+	
+	/**
+	 * Gets distance of given state. {@link #load()} must be called beforehand.
+	 */
+	@Override
+	public int applyAsInt (CubeState state)
+	{
+		return get (index (state));
+	}
+	
+	/**
+	 * Combine given databases by taking maximum of their distances.
+	 * Distances of abstractions never exceed the actual distance, so the maximum remains admissible.
+	 * Sum of distances is only admissible when each move is counted by one database, which is not the case
+	 * for disjoint piece subsets of the cube, since every quarter turn moves both corners and edges.
+	 * 
+	 * @param databases
+	 *        loaded databases.
+	 * @return combined heuristic.
+	 */
+	public static ToIntFunction <CubeState> max (PatternDatabase... databases)
+	{
+		return state ->
+		{
+			int result = 0;
+			for (PatternDatabase database : databases)
+			{
+				result = Math.max (result, database.applyAsInt (state));
+			}
+			return result;
+		};
+	}
+	
+	/**
+	 * Gets number of entries.
+	 * 
+	 * @return number of entries.
+	 */
+	public long size ()
+	{
+		return size;
+	}
+	
+	@Override
+	public String toString ()
+	{
+		return Tuple.OPEN + name + Tuple.COMMA + size + Tuple.CLOSE;
+	}
+}
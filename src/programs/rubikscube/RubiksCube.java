@@ -1,5 +1,6 @@
 package programs.rubikscube;
 
+import java.util.*;
 import javafx.application.*;
 
 
@@ -37,9 +38,17 @@ public class RubiksCube
 	 *        JAVA program arguments.
 	 * @see CubeApplication#main(String...)
 	 * @see CubeApplication#start(javafx.stage.Stage)
+	 * @see CubeBatch#main(String...)
 	 */
 	public static void main (String... args)
 	{
-		Application.launch (CubeApplication.class, args);
+		if (args.length > 0 && args[0].equals ("-batch"))
+		{ // headless batch mode.
+			CubeBatch.main (Arrays.copyOfRange (args, 1, args.length));
+		}
+		else
+		{
+			Application.launch (CubeApplication.class, args);
+		}
 	}
 }
@@ -0,0 +1,259 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+import java.util.*;
+
+
+/**
+ * Compact storage of search nodes in parallel primitive arrays, indexed by node number.
+ * Each node keeps its parent, last move, path cost, priority and state of {@link MoveAutomaton},
+ * which take 15 bytes, instead of a copy of its path and its state.
+ * Packed state is stored only at checkpoints, which are nodes whose path cost is a multiple of {@link #interval},
+ * and state of other nodes is derived by replaying moves from the nearest checkpoint above them.
+ * Path is rebuilt from parents only once end state is found.
+ * 
+ * @author hasol
+ */
+public class SearchNodes
+{
+	/** Parent of root node. */
+	public final static int ROOT = -1;
+	/** Maximum path cost of nodes, so that closed cost {@code cost << 1 | 1} fits value of {@link PackedTable}. */
+	public final static int MAX_COST = 126;
+	
+	/** Path cost between checkpoints. */
+	static int interval = 4;
+	
+	/** Parent of each node. */
+	private int[] parents;
+	/** Last move code of each node. */
+	private byte[] moves;
+	/** Path cost of each node. */
+	private byte[] costs;
+	/** Estimated cost of the path through each node. */
+	private float[] priorities;
+	/** State of automaton of each node. */
+	private byte[] automata;
+	/** Checkpoint of each node, or -1. */
+	private int[] checkpoints;
+	/** Packed states of checkpoints. */
+	private long[] highs, lows;
+	/** Number of nodes. */
+	private int size;
+	/** Number of checkpoints. */
+	private int count;
+	/** Maximum number of nodes. */
+	private final int limit;
+	
+	/**
+	 * Create storage sized for given number of nodes. The storage grows when necessary.
+	 * 
+	 * @param capacity
+	 *        expected number of nodes.
+	 */
+	public SearchNodes (int capacity)
+	{
+		this (capacity, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Create storage sized for given number of nodes, which grows up to given number of nodes.
+	 * 
+	 * @param capacity
+	 *        expected number of nodes.
+	 * @param limit
+	 *        maximum number of nodes.
+	 */
+	public SearchNodes (int capacity, int limit)
+	{
+		this.limit = Math.max (limit, 1);
+		capacity = Math.max (Math.min (capacity, this.limit), 1);
+		parents = new int[capacity];
+		moves = new byte[capacity];
+		costs = new byte[capacity];
+		priorities = new float[capacity];
+		automata = new byte[capacity];
+		checkpoints = new int[capacity];
+		highs = new long[capacity / Math.max (1, interval) + 1];
+		lows = new long[highs.length];
+	}
+	
+	/**
+	 * Add node.
+	 * 
+	 * @param parent
+	 *        parent node, or {@link #ROOT}.
+	 * @param move
+	 *        move code from parent node.
+	 * @param cost
+	 *        path cost, at most {@link #MAX_COST}.
+	 * @param priority
+	 *        estimated cost of the path through the node.
+	 * @param automaton
+	 *        state of automaton, below 128.
+	 * @param state
+	 *        state of the node, which is packed if the node is a checkpoint.
+	 * @return index of added node.
+	 * @throws IllegalStateException
+	 *         if full.
+	 * @throws IllegalArgumentException
+	 *         if path cost is greater than {@link #MAX_COST}.
+	 */
+	public int add (int parent, int move, int cost, double priority, int automaton, CubeState state)
+	{
+		if (size >= limit)
+		{
+			throw new IllegalStateException ("Storage is full");
+		}
+		if (cost > MAX_COST)
+		{
+			throw new IllegalArgumentException ("Invalid cost " + cost);
+		}
+		if (size == parents.length)
+		{
+			int length = (int) Math.min ((long) size * 2, limit);
+			parents = Arrays.copyOf (parents, length);
+			moves = Arrays.copyOf (moves, length);
+			costs = Arrays.copyOf (costs, length);
+			priorities = Arrays.copyOf (priorities, length);
+			automata = Arrays.copyOf (automata, length);
+			checkpoints = Arrays.copyOf (checkpoints, length);
+		}
+		parents[size] = parent;
+		moves[size] = (byte) move;
+		costs[size] = (byte) cost;
+		priorities[size] = (float) priority;
+		automata[size] = (byte) automaton;
+		checkpoints[size] = -1;
+		if (parent == ROOT || cost % interval == 0)
+		{
+			if (count == highs.length)
+			{
+				highs = Arrays.copyOf (highs, count * 2);
+				lows = Arrays.copyOf (lows, count * 2);
+			}
+			highs[count] = state.high ();
+			lows[count] = state.low ();
+			checkpoints[size] = count++;
+		}
+		return size++;
+	}
+	
+	/**
+	 * Derive state of given node, by replaying moves from the nearest checkpoint.
+	 * 
+	 * @param node
+	 *        index of node.
+	 * @return new state of the node.
+	 */
+	public CubeState state (int node)
+	{
+		int depth = 0;
+		int[] path = new int[Math.max (1, interval)];
+		while (checkpoints[node] < 0)
+		{
+			if (depth == path.length)
+			{
+				path = Arrays.copyOf (path, depth * 2);
+			}
+			path[depth++] = moves[node];
+			node = parents[node];
+		}
+		CubeState state = new CubeState (highs[checkpoints[node]], lows[checkpoints[node]]);
+		while (depth > 0)
+		{
+			state.turn (path[--depth]);
+		}
+		return state;
+	}
+	
+	/**
+	 * Rebuild path from root node to given node.
+	 * 
+	 * @param node
+	 *        index of node.
+	 * @return list of steps.
+	 */
+	public LinkedList <CubeDuo> path (int node)
+	{
+		LinkedList <CubeDuo> list = new LinkedList <> ();
+		for (; parents[node] != ROOT; node = parents[node])
+		{
+			LinkedList <CubeDuo> steps = new LinkedList <> ();
+			CubeTable.steps (moves[node], steps);
+			list.addAll (0, steps);
+		}
+		return list;
+	}
+	
+	/**
+	 * Gets path cost of given node.
+	 * 
+	 * @param node
+	 *        index of node.
+	 * @return path cost.
+	 */
+	public int cost (int node)
+	{
+		return costs[node] & 0xFF;
+	}
+	
+	/**
+	 * Gets estimated cost of the path through given node.
+	 * 
+	 * @param node
+	 *        index of node.
+	 * @return priority.
+	 */
+	public float priority (int node)
+	{
+		return priorities[node];
+	}
+	
+	/**
+	 * Gets state of automaton of given node.
+	 * 
+	 * @param node
+	 *        index of node.
+	 * @return state of automaton.
+	 */
+	public int automaton (int node)
+	{
+		return automata[node];
+	}
+	
+	/**
+	 * Evaluate if no more nodes can be added.
+	 * 
+	 * @return {@code true} if the number of nodes reached the limit, otherwise {@code false}.
+	 */
+	public boolean isFull ()
+	{
+		return size >= limit;
+	}
+	
+	/**
+	 * Gets number of nodes.
+	 * 
+	 * @return number of nodes.
+	 */
+	public int size ()
+	{
+		return size;
+	}
+	
+	/**
+	 * Remove all nodes.
+	 */
+	public void clear ()
+	{
+		size = 0;
+		count = 0;
+	}
+	
+	@Override
+	public String toString ()
+	{
+		return Tuple.OPEN + size + Tuple.COMMA + count + Tuple.COMMA + parents.length + Tuple.CLOSE;
+	}
+}
@@ -0,0 +1,535 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+
+/**
+ * Cache of solutions keyed by packed state, shared between threads.
+ * <p>
+ * The memory tier keeps at most {@link #capacity} entries in least recently used order. With admission enabled,
+ * a full memory tier admits new entry only if it was requested more often than the entry it would evict,
+ * counted by a TinyLFU sketch of 4-bit counters which are halved periodically, so that single use entries do not
+ * flush frequently used ones.
+ * <p>
+ * The optional disk tier is a memory-mapped open addressing table of fixed number of slots, which survives restarts.
+ * Each slot is packed state, solution length plus one or zero for empty slot, and up to {@link CubeFile#MAX_LENGTH}
+ * move codes. A full probe sequence overwrites the slot at home position, so that the file never grows.
+ * <p>
+ * Solutions are stored as move codes, which merge two same quarter turns into half turn.
+ * 
+ * @author hasol
+ */
+public class SolutionCache implements Closeable
+{
+	/** Disk tier header value. */
+	public final static int MAGIC = 0x52435343, VERSION = 1;
+	/** Size of disk tier slot in bytes. */
+	final static int SLOT = CubeFile.record (CubeFile.SOLUTIONS);
+	/** Number of slots probed by disk tier. */
+	final static int PROBES = 8;
+	/** Maximum value of sketch counter. */
+	final static int COUNTER_MAX = 15;
+	
+	/** Default maximum number of entries of memory tier. */
+	static int capacity = 1 << 16;
+	/** Default admission of memory tier by frequency. */
+	static boolean admission = true;
+	/** Default file of disk tier, or {@code null} for memory tier only. */
+	static File file = null;
+	/** Default number of slots of disk tier. */
+	static int slots = 1 << 20;
+	
+	/** Shared cache of default configuration. */
+	private static SolutionCache shared;
+	
+	/** Entries of memory tier in access order. */
+	private final LinkedHashMap <Key, byte[]> entries = new LinkedHashMap <> (16, 0.75f, true);
+	/** Maximum number of entries of memory tier. */
+	private final int limit;
+	/** Frequency sketch, or {@code null} without admission. */
+	private final Sketch sketch;
+	/** Channel of disk tier, or {@code null}. */
+	private final FileChannel channel;
+	/** Mapped slots of disk tier, or {@code null}. */
+	private final MappedByteBuffer disk;
+	/** Number of slots of disk tier. */
+	private final int size;
+	/** Statistics. */
+	private long hits, diskHits, misses, evictions, rejections;
+	
+	/**
+	 * Packed state as key of memory tier.
+	 */
+	final static class Key
+	{
+		/** Packed state. */
+		final long high, low;
+		
+		Key (long high, long low)
+		{
+			this.high = high;
+			this.low = low;
+		}
+		
+		@Override
+		public boolean equals (Object obj)
+		{
+			if (!(obj instanceof Key))
+			{
+				return false;
+			}
+			Key other = (Key) obj;
+			return high == other.high && low == other.low;
+		}
+		
+		@Override
+		public int hashCode ()
+		{
+			long hash = hash (high, low);
+			return (int) (hash ^ hash >>> 32);
+		}
+	}
+	
+	/**
+	 * Count-min sketch of 4-bit counters in four rows, estimating recent frequency of keys.
+	 */
+	final static class Sketch
+	{
+		/** Seeds of each row. */
+		final static long[] SEEDS =
+		{
+			0x97CB3127L, 0xB492B66FL, 0x9AE16A3BL, 0xCBF29CE4L
+		};
+		
+		/** Counters, two in each byte. */
+		final byte[] table;
+		/** Mask to select counter. */
+		final int mask;
+		/** Number of increments before halving. */
+		final int period;
+		/** Number of increments since last halving. */
+		int additions;
+		
+		Sketch (int capacity)
+		{
+			int counters = Integer.highestOneBit (Math.max (capacity, 64) - 1) * 4;
+			this.table = new byte[counters / 2];
+			this.mask = counters - 1;
+			this.period = capacity * 10;
+		}
+		
+		/**
+		 * Gets index of counter of given row.
+		 */
+		private int index (long hash, int row)
+		{
+			long value = (hash + SEEDS[row]) * 0x9E3779B97F4A7C15L;
+			return (int) (value ^ value >>> 32) & mask;
+		}
+		
+		/**
+		 * Gets counter of given index.
+		 */
+		private int get (int index)
+		{
+			return table[index >>> 1] >>> ((index & 1) << 2) & 0xF;
+		}
+		
+		/**
+		 * Estimate frequency of given hash.
+		 * 
+		 * @param hash
+		 *        hash of key.
+		 * @return estimated number of recent requests.
+		 */
+		int frequency (long hash)
+		{
+			int result = COUNTER_MAX;
+			for (int row = 0; row < SEEDS.length; row++)
+			{
+				result = Math.min (result, get (index (hash, row)));
+			}
+			return result;
+		}
+		
+		/**
+		 * Count request of given hash, and halve all counters periodically.
+		 * 
+		 * @param hash
+		 *        hash of key.
+		 */
+		void increment (long hash)
+		{
+			for (int row = 0; row < SEEDS.length; row++)
+			{
+				int index = index (hash, row);
+				if (get (index) < COUNTER_MAX)
+				{
+					table[index >>> 1] += 1 << ((index & 1) << 2);
+				}
+			}
+			if (++additions >= period)
+			{
+				for (int i = 0; i < table.length; i++)
+				{
+					table[i] = (byte) (table[i] >>> 1 & 0x77);
+				}
+				additions /= 2;
+			}
+		}
+	}
+	
+	/**
+	 * Create cache of memory tier only.
+	 * 
+	 * @param capacity
+	 *        maximum number of entries.
+	 * @param admission
+	 *        {@code true} to admit entries by frequency, otherwise {@code false} for plain LRU.
+	 */
+	public SolutionCache (int capacity, boolean admission)
+	{
+		this.limit = Math.max (capacity, 1);
+		this.sketch = admission ? new Sketch (limit) : null;
+		this.channel = null;
+		this.disk = null;
+		this.size = 0;
+	}
+	
+	/**
+	 * Create cache of memory tier and disk tier.
+	 * Existing file of the same number of slots is reused, otherwise it is created again.
+	 * 
+	 * @param capacity
+	 *        maximum number of entries of memory tier.
+	 * @param admission
+	 *        {@code true} to admit entries by frequency, otherwise {@code false} for plain LRU.
+	 * @param file
+	 *        file of disk tier.
+	 * @param slots
+	 *        number of slots of disk tier.
+	 * @throws IOException
+	 *         if file cannot be created or mapped.
+	 */
+	public SolutionCache (int capacity, boolean admission, File file, int slots) throws IOException
+	{
+		this.limit = Math.max (capacity, 1);
+		this.sketch = admission ? new Sketch (limit) : null;
+		this.size = Math.min (Math.max (slots, PROBES), (Integer.MAX_VALUE - CubeFile.HEADER) / SLOT);
+		long length = CubeFile.HEADER + (long) size * SLOT;
+		this.channel = FileChannel.open (file.toPath (), StandardOpenOption.CREATE, StandardOpenOption.READ,
+			StandardOpenOption.WRITE);
+		try
+		{
+			ByteBuffer header = ByteBuffer.allocate (CubeFile.HEADER);
+			while (header.hasRemaining () && channel.read (header, header.position ()) >= 0)
+			{
+				continue;
+			}
+			boolean valid = !header.hasRemaining () && header.getInt (0) == MAGIC && header.getInt (4) == VERSION
+				&& header.getInt (12) == SLOT && header.getLong (16) == size && channel.size () == length;
+			if (!valid)
+			{ // extended file is filled with empty slots.
+				channel.truncate (0);
+			}
+			this.disk = channel.map (FileChannel.MapMode.READ_WRITE, 0, length);
+			if (!valid)
+			{
+				disk.putInt (0, MAGIC).putInt (4, VERSION).putInt (8, 0).putInt (12, SLOT).putLong (16, size);
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			channel.close ();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Gets shared cache of default configuration, which is created on first use.
+	 * If disk tier cannot be opened, memory tier is used only.
+	 * 
+	 * @return shared cache.
+	 */
+	public static synchronized SolutionCache shared ()
+	{
+		if (shared == null)
+		{
+			try
+			{
+				shared = file == null ? new SolutionCache (capacity, admission)
+					: new SolutionCache (capacity, admission, file, slots);
+			}
+			catch (IOException e)
+			{
+				System.err.println (e);
+				shared = new SolutionCache (capacity, admission);
+			}
+		}
+		return shared;
+	}
+	
+	/**
+	 * Gets hash of packed state.
+	 * 
+	 * @param high
+	 *        high half of packed state.
+	 * @param low
+	 *        low half of packed state.
+	 * @return hash value.
+	 */
+	static long hash (long high, long low)
+	{
+		return high * 0x9E3779B97F4A7C15L ^ low * 0xC2B2AE3D27D4EB4FL;
+	}
+	
+	/**
+	 * Find cached solution of packed state. Entry found only in disk tier is promoted to memory tier.
+	 * 
+	 * @param high
+	 *        high half of packed state.
+	 * @param low
+	 *        low half of packed state.
+	 * @return move codes of solution, or {@code null} if not cached.
+	 */
+	public synchronized int[] get (long high, long low)
+	{
+		Key key = new Key (high, low);
+		long hash = hash (high, low);
+		if (sketch != null)
+		{
+			sketch.increment (hash);
+		}
+		byte[] moves = entries.get (key);
+		if (moves != null)
+		{
+			hits++;
+			return decode (moves);
+		}
+		int slot = disk == null ? -1 : find (high, low, hash);
+		if (slot >= 0 && disk.get (offset (slot) + CubeFile.STATE) != 0)
+		{
+			diskHits++;
+			int offset = offset (slot) + CubeFile.STATE;
+			moves = new byte[disk.get (offset) - 1];
+			for (int i = 0; i < moves.length; i++)
+			{
+				moves[i] = disk.get (offset + 1 + i);
+			}
+			admit (key, hash, moves);
+			return decode (moves);
+		}
+		misses++;
+		return null;
+	}
+	
+	/**
+	 * Store solution of packed state in both tiers.
+	 * 
+	 * @param high
+	 *        high half of packed state.
+	 * @param low
+	 *        low half of packed state.
+	 * @param steps
+	 *        steps of solution.
+	 * @return {@code true} if stored, otherwise {@code false} if the solution is too long.
+	 */
+	public synchronized boolean put (long high, long low, List <CubeDuo> steps)
+	{
+		byte[] moves = encode (steps);
+		if (moves == null)
+		{
+			return false;
+		}
+		long hash = hash (high, low);
+		admit (new Key (high, low), hash, moves);
+		if (disk != null)
+		{
+			int slot = find (high, low, hash);
+			if (slot < 0)
+			{
+				slot = (int) Long.remainderUnsigned (hash, size);
+			}
+			int offset = offset (slot);
+			disk.putLong (offset, high).putLong (offset + Long.BYTES, low);
+			disk.put (offset + CubeFile.STATE, (byte) (moves.length + 1));
+			for (int i = 0; i < moves.length; i++)
+			{
+				disk.put (offset + CubeFile.STATE + 1 + i, moves[i]);
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Add entry to memory tier, evicting least recently used entry if admitted.
+	 */
+	private void admit (Key key, long hash, byte[] moves)
+	{
+		if (entries.size () >= limit && !entries.containsKey (key))
+		{
+			Iterator <Map.Entry <Key, byte[]>> iterator = entries.entrySet ().iterator ();
+			Key victim = iterator.next ().getKey ();
+			if (sketch != null && sketch.frequency (hash) <= sketch.frequency (hash (victim.high, victim.low)))
+			{
+				rejections++;
+				return;
+			}
+			iterator.remove ();
+			evictions++;
+		}
+		entries.put (key, moves);
+	}
+	
+	/**
+	 * Find slot of disk tier holding given state, or empty slot where it belongs.
+	 * 
+	 * @return index of slot, or {@code -1} if all probed slots hold other states.
+	 */
+	private int find (long high, long low, long hash)
+	{
+		int home = (int) Long.remainderUnsigned (hash, size);
+		for (int i = 0; i < PROBES; i++)
+		{
+			int slot = (home + i) % size, offset = offset (slot);
+			if (disk.get (offset + CubeFile.STATE) == 0
+				|| disk.getLong (offset) == high && disk.getLong (offset + Long.BYTES) == low)
+			{
+				return slot;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Gets byte offset of given slot of disk tier.
+	 */
+	private static int offset (int slot)
+	{
+		return CubeFile.HEADER + slot * SLOT;
+	}
+	
+	/**
+	 * Encode steps into move codes, merging two same quarter turns into half turn.
+	 * 
+	 * @param steps
+	 *        steps of solution.
+	 * @return move codes, or {@code null} if longer than {@link CubeFile#MAX_LENGTH}.
+	 */
+	static byte[] encode (List <CubeDuo> steps)
+	{
+		byte[] moves = new byte[steps.size ()];
+		int length = 0, prev = -1;
+		for (CubeDuo step : steps)
+		{
+			int move = CubeTable.move (step);
+			if (move == prev)
+			{
+				moves[length - 1] = (byte) (CubeTable.QUARTER_SIZE + CubeTable.face (move));
+				prev = -1;
+				continue;
+			}
+			moves[length++] = (byte) move;
+			prev = move;
+		}
+		return length > CubeFile.MAX_LENGTH ? null : Arrays.copyOf (moves, length);
+	}
+	
+	/**
+	 * Decode move codes.
+	 */
+	private static int[] decode (byte[] moves)
+	{
+		int[] result = new int[moves.length];
+		for (int i = 0; i < moves.length; i++)
+		{
+			result[i] = moves[i];
+		}
+		return result;
+	}
+	
+	/**
+	 * Gets number of entries of memory tier.
+	 * 
+	 * @return number of entries.
+	 */
+	public synchronized int size ()
+	{
+		return entries.size ();
+	}
+	
+	/**
+	 * Gets number of requests found in memory tier.
+	 * 
+	 * @return number of hits.
+	 */
+	public synchronized long hits ()
+	{
+		return hits;
+	}
+	
+	/**
+	 * Gets number of requests found in disk tier only.
+	 * 
+	 * @return number of hits.
+	 */
+	public synchronized long diskHits ()
+	{
+		return diskHits;
+	}
+	
+	/**
+	 * Gets number of requests not found.
+	 * 
+	 * @return number of misses.
+	 */
+	public synchronized long misses ()
+	{
+		return misses;
+	}
+	
+	/**
+	 * Gets ratio of requests found in either tier.
+	 * 
+	 * @return hit ratio, or zero without requests.
+	 */
+	public synchronized double hitRatio ()
+	{
+		long total = hits + diskHits + misses;
+		return total == 0 ? 0 : (double) (hits + diskHits) / total;
+	}
+	
+	/**
+	 * Remove all entries of memory tier and reset statistics. Disk tier is kept.
+	 */
+	public synchronized void clear ()
+	{
+		entries.clear ();
+		hits = diskHits = misses = evictions = rejections = 0;
+	}
+	
+	/**
+	 * Write disk tier to storage and close it.
+	 */
+	@Override
+	public synchronized void close () throws IOException
+	{
+		if (channel != null && channel.isOpen ())
+		{
+			disk.force ();
+			channel.close ();
+		}
+	}
+	
+	@Override
+	public synchronized String toString ()
+	{
+		return Tuple.OPEN + entries.size () + Tuple.COMMA + hits + Tuple.COMMA + diskHits + Tuple.COMMA + misses
+			+ Tuple.COMMA + evictions + Tuple.COMMA + rejections + Tuple.CLOSE;
+	}
+}
@@ -0,0 +1,182 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import javafx.application.*;
+
+
+/**
+ * Asynchronous solver of cube shown by {@link CubeManager}, keeping the JavaFX application thread responsive.
+ * Solutions run on a background thread, and their progress is published every {@link #interval} milliseconds
+ * through {@link Platform#runLater(Runnable)}. Cancelling interrupts the search.
+ * When solution finishes, its steps are scheduled by {@link CubeManager#turn(CubeDuo)}.
+ * Methods of this class must be called from the JavaFX application thread.
+ * 
+ * @author hasol
+ */
+public class SolverService
+{
+	/** Interval of progress updates in milliseconds. */
+	static long interval = 100;
+	
+	/** Cube to solve and turn. */
+	private final CubeManager manager;
+	/** Receiver of progress, called on the JavaFX application thread. */
+	private final Consumer <Progress> listener;
+	/** Thread to run solutions, and timer of progress updates. */
+	private final ScheduledExecutorService executor;
+	/** Running search, or {@code null}. */
+	private Future <?> task;
+	/** Result of running search, or {@code null}. */
+	private CompletableFuture <List <CubeDuo>> result;
+	
+	/**
+	 * Snapshot of progress of solution.
+	 */
+	public static class Progress
+	{
+		/** Number of nodes expanded. */
+		public final long expanded;
+		/** Number of open nodes. */
+		public final int frontier;
+		/** Current cost bound. */
+		public final int threshold;
+		/** Whether the search ran out of memory, so that failure does not mean that no solution exists. */
+		public final boolean exhausted;
+		/** Whether the search has finished. */
+		public final boolean done;
+		
+		Progress (CubeSolution solution, boolean done)
+		{
+			this.expanded = solution.expanded;
+			this.frontier = solution.frontier;
+			this.threshold = solution.threshold;
+			this.exhausted = solution.exhausted;
+			this.done = done;
+		}
+		
+		@Override
+		public String toString ()
+		{
+			return Tuple.OPEN + expanded + Tuple.COMMA + frontier + Tuple.COMMA + threshold
+				+ (exhausted ? Tuple.COMMA + "exhausted" : "") + (done ? Tuple.COMMA + "done" : "") + Tuple.CLOSE;
+		}
+	}
+	
+	/**
+	 * Create service for given cube.
+	 * 
+	 * @param manager
+	 *        cube to solve and turn.
+	 * @param listener
+	 *        receiver of progress, called on the JavaFX application thread.
+	 */
+	public SolverService (CubeManager manager, Consumer <Progress> listener)
+	{
+		this.manager = manager;
+		this.listener = listener;
+		this.executor = Executors.newScheduledThreadPool (2, runnable ->
+		{
+			Thread thread = new Thread (runnable, "solver");
+			thread.setDaemon (true);
+			return thread;
+		});
+	}
+	
+	/**
+	 * Start solving current state of the cube, cancelling running search if any.
+	 * 
+	 * @param solution
+	 *        new instance of solution, not used by other threads.
+	 * @return steps of solution, or {@code null} if not found. It is cancelled if the search is cancelled.
+	 */
+	public CompletableFuture <List <CubeDuo>> solve (CubeSolution solution)
+	{
+		cancel ();
+		CubeState state = manager.getState ();
+		CompletableFuture <List <CubeDuo>> future = new CompletableFuture <> ();
+		task = executor.submit ( () ->
+		{
+			try
+			{
+				List <CubeDuo> steps = solution.apply (state);
+				if (!Thread.currentThread ().isInterrupted ())
+				{
+					future.complete (steps);
+				}
+			}
+			catch (Throwable e)
+			{
+				future.completeExceptionally (e);
+			}
+		});
+		ScheduledFuture <?> timer =
+			executor.scheduleAtFixedRate ( () -> publish (solution), interval, interval, TimeUnit.MILLISECONDS);
+		future.whenComplete ( (steps, error) ->
+		{
+			timer.cancel (false);
+			Platform.runLater ( () ->
+			{
+				if (steps != null && result == future)
+				{
+					for (CubeDuo step : steps)
+					{
+						manager.turn (step);
+					}
+				}
+				listener.accept (new Progress (solution, true));
+			});
+		});
+		result = future;
+		return future;
+	}
+	
+	/**
+	 * Publish progress of given solution on the JavaFX application thread.
+	 * 
+	 * @param solution
+	 *        running solution.
+	 */
+	private void publish (CubeSolution solution)
+	{
+		Progress progress = new Progress (solution, false);
+		Platform.runLater ( () -> listener.accept (progress));
+	}
+	
+	/**
+	 * Cancel running search, if any.
+	 * 
+	 * @return {@code true} if a search was cancelled, otherwise {@code false}.
+	 */
+	public boolean cancel ()
+	{
+		if (task == null || result.isDone ())
+		{
+			return false;
+		}
+		task.cancel (true);
+		result.cancel (false);
+		return true;
+	}
+	
+	/**
+	 * Evaluate if a search is running.
+	 * 
+	 * @return {@code true} if running, otherwise {@code false}.
+	 */
+	public boolean isRunning ()
+	{
+		return result != null && !result.isDone ();
+	}
+	
+	/**
+	 * Stop background threads. This service cannot be used afterward.
+	 */
+	public void shutdown ()
+	{
+		cancel ();
+		executor.shutdownNow ();
+	}
+}
@@ -0,0 +1,273 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+import java.util.*;
+import java.util.function.*;
+
+
+/**
+ * Pattern database over three coordinates, reduced by symmetries of the first two coordinates.
+ * Pairs of the first two coordinates conjugate to each other form a class, and the third coordinate is conjugated by
+ * the symmetry carrying the pair to the representative of its class, so that the table is smaller by up to
+ * the number of symmetries. Index is {@code class * third.size + third}, taking the least conjugate of the third
+ * coordinate by symmetries keeping the representative, so that conjugate states share one entry.
+ * <p>
+ * Symmetries must map given moves to given moves, and conjugate of each coordinate must depend on its value only.
+ * Conjugates are derived from path of moves reaching each value from solved state, with conjugate moves.
+ * Pairs not reachable with given moves are not covered.
+ * 
+ * @author hasol
+ */
+public class SymmetryDatabase extends PatternDatabase
+{
+	/** Coordinates of this database. Move tables must be built for {@link #moves}. */
+	final CubeCoordinate first, second, third;
+	/** Symmetries reducing this database, at most 32. */
+	final int[] symmetries;
+	/** Move codes used for generation. */
+	final int[] moves;
+	/** Class and symmetry of each pair, at {@code class * symmetries.length + symmetry}, or -1 if not reachable. */
+	private final int[] classes;
+	/** Pair of the first two coordinates of representative of each class. */
+	private final int[] representatives;
+	/** Bit mask of symmetries keeping representative of each class. */
+	private final int[] stabilizers;
+	/** Conjugate of third coordinate by each symmetry, at {@code value * symmetries.length + symmetry}. */
+	private final char[] conjugates;
+	
+	/**
+	 * Create database over given coordinates, computing classes of pairs.
+	 * 
+	 * @param name
+	 *        file name of this database.
+	 * @param first
+	 *        major coordinate of reduced pair.
+	 * @param second
+	 *        minor coordinate of reduced pair.
+	 * @param third
+	 *        conjugated coordinate.
+	 * @param symmetries
+	 *        indices of symmetries, including {@link CubeSymmetry#IDENTITY}.
+	 * @param moves
+	 *        move codes allowed in the stage.
+	 */
+	public SymmetryDatabase (String name, CubeCoordinate first, CubeCoordinate second, CubeCoordinate third,
+		int[] symmetries, int... moves)
+	{
+		this (name, first, second, third, symmetries, moves, reduce (first, second, symmetries, moves));
+	}
+	
+	/**
+	 * Create database over given coordinates and classes of pairs.
+	 * 
+	 * @param reduction
+	 *        classes, representatives and stabilizers.
+	 */
+	private SymmetryDatabase (String name, CubeCoordinate first, CubeCoordinate second, CubeCoordinate third,
+		int[] symmetries, int[] moves, int[][] reduction)
+	{
+		super (name, (long) reduction[1].length * third.size);
+		this.first = first;
+		this.second = second;
+		this.third = third;
+		this.symmetries = symmetries;
+		this.moves = moves;
+		this.classes = reduction[0];
+		this.representatives = reduction[1];
+		this.stabilizers = reduction[2];
+		this.conjugates = new char[third.size * symmetries.length];
+		int[][] order = order (third.size, third.get (new CubeState ()), third::move, moves);
+		int[] conjugate = new int[third.size];
+		for (int s = 0; s < symmetries.length; s++)
+		{
+			conjugate (order, third::move, symmetries[s], conjugate);
+			for (int value = 0; value < third.size; value++)
+			{
+				conjugates[value * symmetries.length + s] = (char) conjugate[value];
+			}
+		}
+	}
+	
+	/**
+	 * Compute classes of pairs of given coordinates, whose representative is the least conjugate pair.
+	 * 
+	 * @return classes and symmetries of each pair, representatives and stabilizers of each class.
+	 */
+	private static int[][] reduce (CubeCoordinate first, CubeCoordinate second, int[] symmetries, int[] moves)
+	{
+		if (symmetries.length > Integer.SIZE)
+		{
+			throw new IllegalArgumentException ("Too many symmetries " + symmetries.length);
+		}
+		int size = first.size * second.size;
+		IntBinaryOperator mover = (pair, move) -> first.move (pair / second.size, move) * second.size
+			+ second.move (pair % second.size, move);
+		CubeState solved = new CubeState ();
+		int[][] order = order (size, first.get (solved) * second.size + second.get (solved), mover, moves);
+		int[] least = new int[size], symmetry = new int[size], fixed = new int[size], conjugate = new int[size];
+		Arrays.fill (least, Integer.MAX_VALUE);
+		for (int s = 0; s < symmetries.length; s++)
+		{
+			conjugate (order, mover, symmetries[s], conjugate);
+			for (int pair : order[0])
+			{
+				if (conjugate[pair] < least[pair])
+				{
+					least[pair] = conjugate[pair];
+					symmetry[pair] = s;
+				}
+				if (conjugate[pair] == pair)
+				{
+					fixed[pair] |= 1 << s;
+				}
+			}
+		}
+		// number classes in increasing order of representatives.
+		int count = 0;
+		for (int pair = 0; pair < size; pair++)
+		{
+			conjugate[pair] = least[pair] == pair ? count++ : -1;
+		}
+		int[] classes = new int[size], representatives = new int[count], stabilizers = new int[count];
+		Arrays.fill (classes, -1);
+		for (int pair : order[0])
+		{
+			int k = conjugate[least[pair]];
+			classes[pair] = k * symmetries.length + symmetry[pair];
+			representatives[k] = least[pair];
+			stabilizers[k] = fixed[least[pair]];
+		}
+		return new int[][] {classes, representatives, stabilizers};
+	}
+	
+	/**
+	 * Order values reachable from solved value by breadth first search.
+	 * 
+	 * @param size
+	 *        number of values.
+	 * @param solved
+	 *        value of solved state.
+	 * @param mover
+	 *        value after move.
+	 * @param moves
+	 *        move codes.
+	 * @return reached values in order, parent value and move reaching each value.
+	 */
+	private static int[][] order (int size, int solved, IntBinaryOperator mover, int[] moves)
+	{
+		int[] queue = new int[size], parents = new int[size], steps = new int[size];
+		boolean[] found = new boolean[size];
+		int head = 0, tail = 0;
+		queue[tail++] = solved;
+		found[solved] = true;
+		while (head < tail)
+		{
+			int value = queue[head++];
+			for (int move : moves)
+			{
+				int next = mover.applyAsInt (value, move);
+				if (!found[next])
+				{
+					found[next] = true;
+					parents[next] = value;
+					steps[next] = move;
+					queue[tail++] = next;
+				}
+			}
+		}
+		return new int[][] {Arrays.copyOf (queue, tail), parents, steps};
+	}
+	
+	/**
+	 * Conjugate ordered values by given symmetry, turning conjugate of parent by conjugate move.
+	 * Solved value is its own conjugate, since symmetries keep solved state.
+	 * 
+	 * @param order
+	 *        values in breadth first order, with parents and moves.
+	 * @param mover
+	 *        value after move.
+	 * @param symmetry
+	 *        index of symmetry.
+	 * @param result
+	 *        receives conjugate of each value.
+	 */
+	private static void conjugate (int[][] order, IntBinaryOperator mover, int symmetry, int[] result)
+	{
+		int[] queue = order[0], parents = order[1], steps = order[2];
+		result[queue[0]] = queue[0];
+		for (int i = 1; i < queue.length; i++)
+		{
+			int value = queue[i];
+			result[value] = mover.applyAsInt (result[parents[value]], CubeSymmetry.conjugate (steps[value], symmetry));
+		}
+	}
+	
+	/**
+	 * Compute entry index of given coordinates.
+	 * 
+	 * @param a
+	 *        value of first coordinate.
+	 * @param b
+	 *        value of second coordinate.
+	 * @param c
+	 *        value of third coordinate.
+	 * @return index in range {@code [0, size)}.
+	 */
+	public long index (int a, int b, int c)
+	{
+		int n = symmetries.length, entry = classes[a * second.size + b], k = entry / n;
+		int value = conjugates[c * n + entry % n], result = value;
+		if ((stabilizers[k] & stabilizers[k] - 1) != 0)
+		{ // representative has other symmetries, whose conjugates are the same state.
+			for (int mask = stabilizers[k]; mask != 0; mask &= mask - 1)
+			{
+				result = Math.min (result, conjugates[value * n + Integer.numberOfTrailingZeros (mask)]);
+			}
+		}
+		return (long) k * third.size + result;
+	}
+	
+	/**
+	 * Gets distance of given coordinates.
+	 * 
+	 * @param a
+	 *        value of first coordinate.
+	 * @param b
+	 *        value of second coordinate.
+	 * @param c
+	 *        value of third coordinate.
+	 * @return minimum number of moves to reach goal.
+	 */
+	public int get (int a, int b, int c)
+	{
+		return get (index (a, b, c));
+	}
+	
+	@Override
+	public long index (CubeState state)
+	{
+		return index (first.get (state), second.get (state), third.get (state));
+	}
+	
+	@Override
+	protected int expand (long index, long[] next)
+	{
+		int pair = representatives[(int) (index / third.size)], c = (int) (index % third.size);
+		int a = pair / second.size, b = pair % second.size;
+		for (int i = 0; i < moves.length; i++)
+		{
+			next[i] = index (first.move (a, moves[i]), second.move (b, moves[i]), third.move (c, moves[i]));
+		}
+		return moves.length;
+	}
+	
+	/**
+	 * Gets number of classes of pairs.
+	 * 
+	 * @return number of classes.
+	 */
+	public int classes ()
+	{
+		return representatives.length;
+	}
+}
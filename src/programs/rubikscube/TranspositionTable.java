@@ -0,0 +1,226 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+import java.util.*;
+
+
+/**
+ * Fixed capacity table of best known path cost for each visited state.
+ * It serves as both closed set and best-g map for search problems.
+ * Keys must have value semantics for {@link Object#equals(Object)} and {@link Object#hashCode()}.
+ * <p>
+ * Entries are stored in buckets of {@link #WAYS} slots.
+ * When a bucket is full, the entry with largest path cost is evicted,
+ * so that states close to the initial state, which prune the most, are kept.
+ * Eviction only makes the table forget states, so search remains complete.
+ * 
+ * @author hasol
+ * @param <T>
+ *        Type of state.
+ */
+public class TranspositionTable <T>
+{
+	/** Number of slots in each bucket. */
+	public final static int WAYS = 4;
+	/** Value returned for states not in this table. */
+	public final static int UNKNOWN = Integer.MAX_VALUE;
+	/** Flag bit marking expanded state. */
+	private final static int CLOSED = 1;
+	
+	/** Stored states. */
+	private final Object[] keys;
+	/** Path cost of each stored state, shifted left by one with {@link #CLOSED} flag. */
+	private final int[] values;
+	/** Mask to select bucket from hash. */
+	private final int mask;
+	/** Number of stored states. */
+	private int size;
+	/** Number of evicted states. */
+	private long evictions;
+	
+	/**
+	 * Create table holding at most given number of states.
+	 * 
+	 * @param capacity
+	 *        maximum number of states, rounded up to power of two.
+	 */
+	public TranspositionTable (int capacity)
+	{
+		int buckets = Integer.highestOneBit (Math.min (Math.max (WAYS, capacity), 1 << 30) - 1) * 2 / WAYS;
+		this.keys = new Object[buckets * WAYS];
+		this.values = new int[buckets * WAYS];
+		this.mask = buckets - 1;
+	}
+	
+	/**
+	 * Find first slot of bucket for given state.
+	 * 
+	 * @param key
+	 *        state to find.
+	 * @return index of first slot.
+	 */
+	private int bucket (T key)
+	{
+		int hash = key.hashCode () * 0x9E3779B9;
+		return ((hash ^ hash >>> 16) & mask) * WAYS;
+	}
+	
+	/**
+	 * Find slot of given state.
+	 * 
+	 * @param key
+	 *        state to find.
+	 * @return index of slot, or -1 if not stored.
+	 */
+	private int find (T key)
+	{
+		for (int i = bucket (key), n = i + WAYS; i < n && keys[i] != null; i++)
+		{
+			if (keys[i].equals (key))
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Store given state at a free slot, evicting an entry if necessary.
+	 * 
+	 * @param key
+	 *        state to store.
+	 * @param value
+	 *        encoded value to store.
+	 */
+	private void insert (T key, int value)
+	{
+		int start = bucket (key), victim = start;
+		for (int i = start, n = start + WAYS; i < n; i++)
+		{
+			if (keys[i] == null)
+			{
+				keys[i] = key;
+				values[i] = value;
+				size++;
+				return;
+			}
+			if (values[i] > values[victim])
+			{
+				victim = i;
+			}
+		}
+		keys[victim] = key;
+		values[victim] = value;
+		evictions++;
+	}
+	
+	/**
+	 * Gets best known path cost of given state.
+	 * 
+	 * @param key
+	 *        state to query.
+	 * @return path cost, or {@link #UNKNOWN} if not stored.
+	 */
+	public int get (T key)
+	{
+		int i = find (key);
+		return i < 0 ? UNKNOWN : values[i] >>> 1;
+	}
+	
+	/**
+	 * Record that given state has been reached with given path cost.
+	 * 
+	 * @param key
+	 *        generated state.
+	 * @param cost
+	 *        path cost to reach the state.
+	 * @return {@code true} if the cost is better than any known path, otherwise {@code false}.
+	 */
+	public boolean put (T key, int cost)
+	{
+		int i = find (key);
+		if (i < 0)
+		{
+			insert (key, cost << 1);
+			return true;
+		}
+		else if (cost < values[i] >>> 1)
+		{
+			values[i] = cost << 1;
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Record that given state is being expanded with given path cost.
+	 * 
+	 * @param key
+	 *        expanded state.
+	 * @param cost
+	 *        path cost to reach the state.
+	 * @return {@code true} if the state should be expanded,
+	 *         {@code false} if a better path is known or it was already expanded with the same cost.
+	 */
+	public boolean close (T key, int cost)
+	{
+		int i = find (key);
+		if (i < 0)
+		{
+			insert (key, cost << 1 | CLOSED);
+			return true;
+		}
+		else if (cost < values[i] >>> 1 || cost == values[i] >>> 1 && (values[i] & CLOSED) == 0)
+		{
+			values[i] = cost << 1 | CLOSED;
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Remove all states.
+	 */
+	public void clear ()
+	{
+		Arrays.fill (keys, null);
+		size = 0;
+		evictions = 0;
+	}
+	
+	/**
+	 * Gets number of stored states.
+	 * 
+	 * @return number of stored states.
+	 */
+	public int size ()
+	{
+		return size;
+	}
+	
+	/**
+	 * Gets maximum number of stored states.
+	 * 
+	 * @return capacity of this table.
+	 */
+	public int capacity ()
+	{
+		return keys.length;
+	}
+	
+	/**
+	 * Gets number of states evicted to stay within capacity.
+	 * 
+	 * @return number of evictions.
+	 */
+	public long evictions ()
+	{
+		return evictions;
+	}
+	
+	@Override
+	public String toString ()
+	{
+		return Tuple.OPEN + size + Tuple.COMMA + keys.length + Tuple.COMMA + evictions + Tuple.CLOSE;
+	}
+}
@@ -1,7 +1,6 @@
 package programs.rubikscube;
 
 // import static programs.rubikscube.RubiksCube.*;
-import javafx.scene.paint.*;
 
 
 /**
@@ -59,6 +58,12 @@ class Duo <T, U> extends Tuple
 		return false;
 	}
 	
+	@Override
+	public int hashCode ()
+	{
+		return (first == null ? 0 : first.hashCode ()) * 31 + (second == null ? 0 : second.hashCode ());
+	}
+	
 	@Override
 	public String toString ()
 	{
@@ -136,17 +141,16 @@ class Trio <T, U, V> extends Tuple
 	}
 	
 	@Override
-	public String toString ()
+	public int hashCode ()
 	{
-		return OPEN + first.toString () + COMMA + second.toString () + COMMA + third.toString () + CLOSE;
+		return ((first == null ? 0 : first.hashCode ()) * 31 + (second == null ? 0 : second.hashCode ())) * 31 +
+			(third == null ? 0 : third.hashCode ());
 	}
-}
-
-class CubeTrio extends Trio <Color, CubeLayer, CubeLayer>
-{
-	public CubeTrio (Color first, CubeLayer second, CubeLayer third)
+	
+	@Override
+	public String toString ()
 	{
-		super (first, second, third);
+		return OPEN + first.toString () + COMMA + second.toString () + COMMA + third.toString () + CLOSE;
 	}
 }
 
@@ -0,0 +1,350 @@
+package programs.rubikscube;
+
+// import static programs.rubikscube.RubiksCube.*;
+import java.util.*;
+
+
+/**
+ * Two-phase solution of Kociemba, finding short solutions quickly instead of proven optimal ones.
+ * Phase 1 brings the cube into subgroup where corners and edges are oriented and middle layer edges are in the
+ * middle layer, which is the subgroup generated by turns of {@link CubeAxis#Y_POS} and {@link CubeAxis#Y_NEG} with
+ * half turns of other faces. Phase 2 solves the cube within that subgroup.
+ * Both phases are iterative deepening search over coordinates, with pruning tables of coordinate pairs.
+ * Phase 1 is also pruned by table of all its coordinates, reduced by the 16 symmetries keeping the subgroup.
+ * Moves are counted in half turn metric, and half turns are expanded to two quarter turns in the result.
+ * Instance of this class must not be shared between threads.
+ * 
+ * @author hasol
+ */
+public class TwoPhaseSolution extends CubeSolution
+{
+	/** Moves of phase 1, which are all moves. */
+	final static int[] PHASE1;
+	/** Moves of phase 2, which keep the cube in the subgroup. */
+	final static int[] PHASE2 =
+	{
+		4, 5, 6, 7, 12, 13, 14, 15, 16, 17
+	};
+	/** Middle layer edges, which are the last 4 edges of {@link CubePiece#EDGE}. */
+	final static int SLICE_MASK = 0xF00;
+	/** Automaton of all moves, which prunes both phases. */
+	final static MoveAutomaton AUTOMATON;
+	/** Maximum number of moves of phase 1 and phase 2 together. */
+	final static int LIMIT = 30;
+	
+	/** Target number of moves. Search stops as soon as solution of this length or shorter is found. */
+	static int maximum = 20;
+	/** Time limit in milliseconds, after which the best solution found so far is returned. */
+	static long timeout = 1000;
+	
+	/** Time limit of this solution in milliseconds. */
+	long duration = timeout;
+	/** Limit of number of phase 1 nodes, after which the best solution found so far is returned. */
+	long budget = Long.MAX_VALUE;
+	/** Move codes of current path, phase 1 followed by phase 2. */
+	int[] stack = new int[LIMIT];
+	/** Move codes of best solution found. */
+	int[] best;
+	/** Length of best solution found. */
+	int length;
+	/** Initial state. */
+	CubeState state;
+	/** Time limit of current search, in nanoseconds. */
+	long deadline;
+	/** Number of phase 1 nodes visited. */
+	long nodes;
+	/** Number of phase 2 nodes visited. */
+	long visits;
+	/** Whether current search is interrupted, or out of time with any solution. */
+	boolean stopped;
+	
+	static
+	{
+		PHASE1 = new int[CubeTable.MOVE_SIZE];
+		for (int move = 0; move < CubeTable.MOVE_SIZE; move++)
+		{
+			PHASE1[move] = move;
+		}
+		AUTOMATON = MoveAutomaton.of (PHASE1);
+	}
+	
+	/**
+	 * Coordinates and pruning tables, computed or loaded on first use.
+	 */
+	static class Tables
+	{
+		/** Phase 1 coordinates. */
+		final static CubeCoordinate TWIST, FLIP, SLICE;
+		/** Phase 2 coordinates. */
+		final static CubeCoordinate CORNER, EDGE, SLICE_PERM;
+		/** Phase 1 pruning tables. */
+		final static CoordinateDatabase TWIST_FLIP;
+		/** Phase 1 pruning table of all coordinates. */
+		final static SymmetryDatabase FLIP_SLICE_TWIST;
+		/** Phase 2 pruning tables. */
+		final static CoordinateDatabase CORNER_SLICE, EDGE_SLICE;
+		/** Slice coordinate of solved state. */
+		final static int SLICE_SOLVED;
+		
+		static
+		{
+			TWIST = CubeCoordinate.orientation (CubePiece.CORNER).build (PHASE1);
+			FLIP = CubeCoordinate.orientation (CubePiece.EDGE).build (PHASE1);
+			SLICE = CubeCoordinate.combination (CubePiece.EDGE, SLICE_MASK).build (PHASE1);
+			CORNER = CubeCoordinate.permutation (CubePiece.CORNER, 0, 8).build (PHASE2);
+			EDGE = CubeCoordinate.permutation (CubePiece.EDGE, 0, 8).build (PHASE2);
+			SLICE_PERM = CubeCoordinate.permutation (CubePiece.EDGE, 8, 12).build (PHASE2);
+			FLIP_SLICE_TWIST = new SymmetryDatabase ("flip-slice-twist.pdb", FLIP, SLICE, TWIST,
+				CubeSymmetry.preserving (PHASE2), PHASE1);
+			TWIST_FLIP = new CoordinateDatabase ("twist-flip.pdb", TWIST, FLIP, PHASE1);
+			CORNER_SLICE = new CoordinateDatabase ("corner-slice.pdb", CORNER, SLICE_PERM, PHASE2);
+			EDGE_SLICE = new CoordinateDatabase ("edge-slice.pdb", EDGE, SLICE_PERM, PHASE2);
+			PatternDatabase[] databases = {FLIP_SLICE_TWIST, TWIST_FLIP, CORNER_SLICE, EDGE_SLICE};
+			for (PatternDatabase database : databases)
+			{
+				database.load ();
+			}
+			SLICE_SOLVED = SLICE.get (new CubeState ());
+		}
+	}
+	
+	@Override
+	public List <CubeDuo> apply (CubeState map)
+	{
+		state = new CubeState (map);
+		best = null;
+		length = LIMIT + 1;
+		nodes = 0;
+		visits = 0;
+		stopped = false;
+		expanded = 0;
+		// load tables before starting the clock, since first use may generate them.
+		int twist = Tables.TWIST.get (state), flip = Tables.FLIP.get (state), slice = Tables.SLICE.get (state);
+		deadline = System.nanoTime () + duration * 1000000;
+		for (int depth = phase1 (twist, flip, slice); depth < length; depth++)
+		{
+			threshold = depth;
+			if (phase1 (twist, flip, slice, 0, depth))
+			{
+				break;
+			}
+		}
+		if (best == null)
+		{
+			return null;
+		}
+		LinkedList <CubeDuo> list = new LinkedList <> ();
+		for (int i = 0; i < length; i++)
+		{
+			CubeTable.steps (best[i], list);
+		}
+		return list;
+	}
+	
+	/**
+	 * Estimate number of moves of phase 1.
+	 * 
+	 * @param twist
+	 *        corner orientation coordinate.
+	 * @param flip
+	 *        edge orientation coordinate.
+	 * @param slice
+	 *        middle layer edge position coordinate.
+	 * @return lower bound of number of moves.
+	 */
+	static int phase1 (int twist, int flip, int slice)
+	{
+		return Math.max (Tables.FLIP_SLICE_TWIST.get (flip, slice, twist), Tables.TWIST_FLIP.get (twist, flip));
+	}
+	
+	/**
+	 * Estimate number of moves of phase 2.
+	 * 
+	 * @param corner
+	 *        corner permutation coordinate.
+	 * @param edge
+	 *        permutation coordinate of edges not in middle layer.
+	 * @param slice
+	 *        permutation coordinate of edges in middle layer.
+	 * @return lower bound of number of moves.
+	 */
+	static int phase2 (int corner, int edge, int slice)
+	{
+		return Math.max (Tables.CORNER_SLICE.get (corner, slice), Tables.EDGE_SLICE.get (edge, slice));
+	}
+	
+	/**
+	 * Search phase 1 solutions of exactly given length, and try phase 2 from each of them.
+	 * Once any solution is found, it keeps searching for shorter one until target length, time limit or node budget.
+	 * 
+	 * @param twist
+	 *        corner orientation coordinate.
+	 * @param flip
+	 *        edge orientation coordinate.
+	 * @param slice
+	 *        middle layer edge position coordinate.
+	 * @param depth
+	 *        number of moves on the stack.
+	 * @param remain
+	 *        number of phase 1 moves left.
+	 * @return {@code true} if search should stop, otherwise {@code false}.
+	 */
+	boolean phase1 (int twist, int flip, int slice, int depth, int remain)
+	{
+		if ((++nodes & 0x3FF) == 0)
+		{ // publish progress, and stop if interrupted, or out of time or budget with any solution.
+			expanded = nodes;
+			if (expired () || best != null && nodes >= budget)
+			{
+				return true;
+			}
+		}
+		if (remain == 0)
+		{
+			return phase1 (twist, flip, slice) == 0 && phase2 (depth);
+		}
+		else if (phase1 (twist, flip, slice) > remain)
+		{
+			return false;
+		}
+		for (int move : PHASE1)
+		{
+			if (test (move, depth))
+			{
+				stack[depth] = move;
+				if (phase1 (Tables.TWIST.move (twist, move), Tables.FLIP.move (flip, move),
+					Tables.SLICE.move (slice, move), depth + 1, remain - 1))
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Search phase 2 from end of given phase 1 solution, for solution shorter than the best one.
+	 * 
+	 * @param depth
+	 *        number of phase 1 moves on the stack.
+	 * @return {@code true} if solution within target length is found or search is stopped, otherwise {@code false}.
+	 */
+	boolean phase2 (int depth)
+	{
+		if (depth > 0 && Arrays.binarySearch (PHASE2, stack[depth - 1]) >= 0)
+		{ // phase 1 ending with phase 2 move was already tried with shorter phase 1.
+			return false;
+		}
+		CubeState next = new CubeState (state);
+		for (int i = 0; i < depth; i++)
+		{
+			next.turn (stack[i]);
+		}
+		int corner = Tables.CORNER.get (next), edge = Tables.EDGE.get (next), slice = Tables.SLICE_PERM.get (next);
+		for (int remain = phase2 (corner, edge, slice); depth + remain < length; remain++)
+		{
+			if (phase2 (corner, edge, slice, depth, remain))
+			{
+				length = depth + remain;
+				best = Arrays.copyOf (stack, length);
+				break;
+			}
+			else if (stopped)
+			{
+				return true;
+			}
+		}
+		return length <= maximum;
+	}
+	
+	/**
+	 * Search phase 2 solutions of exactly given length.
+	 * 
+	 * @param corner
+	 *        corner permutation coordinate.
+	 * @param edge
+	 *        permutation coordinate of edges not in middle layer.
+	 * @param slice
+	 *        permutation coordinate of edges in middle layer.
+	 * @param depth
+	 *        number of moves on the stack.
+	 * @param remain
+	 *        number of phase 2 moves left.
+	 * @return {@code true} if found, otherwise {@code false}.
+	 */
+	boolean phase2 (int corner, int edge, int slice, int depth, int remain)
+	{
+		if (stopped || (++visits & 0x3FF) == 0 && expired ())
+		{
+			return false;
+		}
+		int estimate = phase2 (corner, edge, slice);
+		if (estimate > remain)
+		{
+			return false;
+		}
+		else if (remain == 0)
+		{
+			return true;
+		}
+		for (int move : PHASE2)
+		{
+			if (test (move, depth))
+			{
+				stack[depth] = move;
+				if (phase2 (Tables.CORNER.move (corner, move), Tables.EDGE.move (edge, move),
+					Tables.SLICE_PERM.move (slice, move), depth + 1, remain - 1))
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Evaluate if current search is interrupted, or out of time with any solution, and remember it.
+	 * 
+	 * @return {@code true} if search should stop, otherwise {@code false}.
+	 */
+	boolean expired ()
+	{
+		if (!stopped && (Thread.currentThread ().isInterrupted () || best != null && System.nanoTime () > deadline))
+		{
+			stopped = true;
+		}
+		return stopped;
+	}
+	
+	/**
+	 * Evaluate if next move is allowed after moves on the stack.
+	 * Turning the same face twice in a row can be merged into one move, and opposite faces commute,
+	 * so only one order is searched. Both are rejected by {@link #AUTOMATON}.
+	 * 
+	 * @param move
+	 *        move code of next step.
+	 * @param depth
+	 *        number of moves on the stack.
+	 * @return {@code true} if allowed, otherwise {@code false}.
+	 */
+	boolean test (int move, int depth)
+	{
+		return AUTOMATON.test (move, stack, depth);
+	}
+	
+	/**
+	 * Estimate number of moves in half turn metric, as the larger of phase 1 estimate and
+	 * phase 2 estimate if the state is already in the phase 2 subgroup.
+	 */
+	@Override
+	public double applyAsDouble (CubeState state)
+	{
+		int twist = Tables.TWIST.get (state), flip = Tables.FLIP.get (state), slice = Tables.SLICE.get (state);
+		int estimate = phase1 (twist, flip, slice);
+		if (estimate == 0)
+		{
+			estimate = phase2 (Tables.CORNER.get (state), Tables.EDGE.get (state), Tables.SLICE_PERM.get (state));
+		}
+		return estimate;
+	}
+}
@@ -1,6 +1,10 @@
 
 /**
  * JavaFX Application to simulate and solve Rubik's Cube.
+ * <p>
+ * Solutions and their model, such as {@link programs.rubikscube.CubeState}, {@link programs.rubikscube.CubeTable}
+ * and {@link programs.rubikscube.CubeAxis}, use no JavaFX type, so they run headless without the toolkit.
+ * {@link programs.rubikscube.CubeManager} converts between the model and the 3D view.
  * 
  * @author hasol
  */